@@ -0,0 +1,63 @@
+package de.fraunhofer.fokus.ids.benchmarks;
+
+import de.fraunhofer.fokus.ids.persistence.entities.DataAsset;
+import de.fraunhofer.fokus.ids.persistence.util.RowMapper;
+import de.fraunhofer.fokus.ids.services.DataResourceFactory;
+import de.fraunhofer.iais.eis.Resource;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures building the DataResources of a catalog, as done for every catalog page and every rebuild of the CatalogCache.
+ * Run with -prof gc for the allocation rate per operation.
+ * @author Vincent Bohlen, vincent.bohlen@fokus.fraunhofer.de
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CatalogBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    private int resources;
+
+    private DataResourceFactory factory;
+    private List<DataAsset> dataAssets;
+
+    @Setup
+    public void setup() throws URISyntaxException {
+        factory = new DataResourceFactory("http://localhost:8090");
+        dataAssets = new ArrayList<>(resources);
+        long createdAt = System.currentTimeMillis();
+        for (int i = 0; i < resources; i++) {
+            // mapped like the rows of the data asset queries
+            dataAssets.add(RowMapper.DATA_ASSET.map(new JsonObject()
+                    .put("id", i)
+                    .put("created_at", createdAt - i * 1000L)
+                    .put("datasettitle", "Dataset " + i)
+                    .put("datasetdescription", "Description of dataset " + i)
+                    .put("organizationtitle", "Organization " + i % 100)
+                    .put("organizationdescription", "Description of organization " + i % 100)
+                    .put("licenseurl", "https://www.govdata.de/dl-de/by-2-0")
+                    .put("tags", new JsonArray().add("tag" + i % 10).add("tag" + i % 50).add("tag" + i % 250))
+                    .put("version", "1.0")));
+        }
+    }
+
+    @Benchmark
+    public List<Resource> createDataResources() {
+        List<Resource> resources = new ArrayList<>(dataAssets.size());
+        for (DataAsset dataAsset : dataAssets) {
+            resources.add(factory.create(dataAsset));
+        }
+        return resources;
+    }
+}
@@ -0,0 +1,82 @@
+package de.fraunhofer.fokus.ids.benchmarks;
+
+import de.fraunhofer.fokus.ids.codecs.MultipartEncoder;
+import io.vertx.core.buffer.Buffer;
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.mime.MultipartEntityBuilder;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures encoding an IDS multipart message with a catalog sized payload, compared to the MultipartEntityBuilder it replaced.
+ * Run with -prof gc for the allocation rate per operation.
+ * @author Vincent Bohlen, vincent.bohlen@fokus.fraunhofer.de
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class MultipartEncoderBenchmark {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    @Param({"10240", "1048576", "16777216"})
+    private int payloadSize;
+
+    private String header;
+    private String payload;
+    private List<Buffer> payloadChunks;
+
+    @Setup
+    public void setup() {
+        header = "{\"@type\":\"ids:SelfDescriptionResponse\",\"issued\":\"2019-05-21T10:15:30.000+02:00\",\"modelVersion\":\"2.0.0\"}";
+        StringBuilder builder = new StringBuilder(payloadSize);
+        while (builder.length() < payloadSize) {
+            builder.append("{\"@type\":\"ids:DataResource\",\"title\":\"Dataset ").append(builder.length()).append("\"},\n");
+        }
+        payload = builder.substring(0, payloadSize);
+        // chunked like the output of the InfomodelSerializer
+        byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+        payloadChunks = new ArrayList<>();
+        for (int offset = 0; offset < bytes.length; offset += CHUNK_SIZE) {
+            payloadChunks.add(Buffer.buffer().appendBytes(bytes, offset, Math.min(CHUNK_SIZE, bytes.length - offset)));
+        }
+    }
+
+    @Benchmark
+    public Buffer multipartEntityBuilder() throws IOException {
+        HttpEntity entity = MultipartEntityBuilder.create()
+                .setBoundary(MultipartEncoder.IDS_BOUNDARY)
+                .addTextBody("header", header, ContentType.APPLICATION_JSON)
+                .addTextBody("payload", payload, ContentType.APPLICATION_JSON)
+                .build();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        entity.writeTo(out);
+        return Buffer.buffer(out.toString());
+    }
+
+    @Benchmark
+    public Buffer toBuffer() {
+        return new MultipartEncoder()
+                .addPart("header", MultipartEncoder.JSON, header)
+                .addPart("payload", MultipartEncoder.JSON, payloadChunks)
+                .toBuffer();
+    }
+
+    @Benchmark
+    public List<Buffer> toBuffers() {
+        return new MultipartEncoder()
+                .addPart("header", MultipartEncoder.JSON, header)
+                .addPart("payload", MultipartEncoder.JSON, payloadChunks)
+                .toBuffers();
+    }
+}
@@ -0,0 +1,205 @@
+package de.fraunhofer.fokus.ids.codecs;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.file.AsyncFile;
+import io.vertx.core.file.OpenOptions;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Byte range requests (RFC 7233): parsing of the Range header, evaluation of If-Range and
+ * sending of multiple ranges of a file as multipart/byteranges.
+ * @author Vincent Bohlen, vincent.bohlen@fokus.fraunhofer.de
+ */
+public class ByteRanges {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ByteRanges.class.getName());
+
+    public static final String BYTES = "bytes";
+
+    /**
+     * Requests with more ranges are answered with the complete representation, so tiny ranges cannot multiply the work of a request.
+     */
+    public static final int MAX_RANGES = 32;
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * @param header the Range header of the request, may be null
+     * @param length the length of the representation
+     * @return the satisfiable ranges as inclusive [first, last] pairs in requested order, an empty list if none is satisfiable,
+     * or null if the header is missing, malformed or has more than MAX_RANGES ranges and has to be ignored
+     */
+    public static List<long[]> parse(String header, long length) {
+        if (header == null || !header.startsWith(BYTES + "=")) {
+            return null;
+        }
+        String[] specs = header.substring(BYTES.length() + 1).split(",");
+        if (specs.length > MAX_RANGES) {
+            return null;
+        }
+        List<long[]> ranges = new ArrayList<>();
+        try {
+            for (String spec : specs) {
+                int dash = spec.indexOf('-');
+                if (dash < 0) {
+                    return null;
+                }
+                String first = spec.substring(0, dash).trim();
+                String last = spec.substring(dash + 1).trim();
+                long start;
+                long end;
+                if (first.isEmpty()) {
+                    long suffix = Long.parseLong(last);
+                    if (suffix < 0) {
+                        return null;
+                    }
+                    start = Math.max(length - suffix, 0);
+                    end = suffix == 0 ? -1 : length - 1;
+                } else {
+                    start = Long.parseLong(first);
+                    end = last.isEmpty() ? length - 1 : Long.parseLong(last);
+                    if (start < 0 || end < start) {
+                        return null;
+                    }
+                    end = Math.min(end, length - 1);
+                }
+                if (start < length && start <= end) {
+                    ranges.add(new long[]{start, end});
+                }
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return ranges;
+    }
+
+    /**
+     * @param ifRange the If-Range header of the request, may be null
+     * @param etag the strong ETag of the representation
+     * @param lastModified the formatted Last-Modified of the representation, may be null
+     * @return true if the Range header applies, i.e. If-Range is missing or matches the current representation
+     */
+    public static boolean ifRange(String ifRange, String etag, String lastModified) {
+        if (ifRange == null) {
+            return true;
+        }
+        // weak validators never match
+        if (ifRange.startsWith("\"")) {
+            return ifRange.equals(etag);
+        }
+        return lastModified != null && ifRange.equals(lastModified);
+    }
+
+    public static String contentRange(long[] range, long length) {
+        return BYTES + " " + range[0] + "-" + range[1] + "/" + length;
+    }
+
+    /**
+     * Sends the ranges of the file as 206 multipart/byteranges, reading chunk by chunk as the response drains.
+     * @param contentType the content type of the file, may be null
+     */
+    public static void sendMultipart(Vertx vertx, String file, List<long[]> ranges, long length, String contentType, HttpServerResponse response) {
+        String boundary = UUID.randomUUID().toString();
+        List<Buffer> heads = new ArrayList<>();
+        long total = 0;
+        for (long[] range : ranges) {
+            StringBuilder head = new StringBuilder(heads.isEmpty() ? "" : "\r\n").append("--").append(boundary).append("\r\n");
+            if (contentType != null) {
+                head.append("Content-Type: ").append(contentType).append("\r\n");
+            }
+            head.append("Content-Range: ").append(contentRange(range, length)).append("\r\n\r\n");
+            Buffer buffer = Buffer.buffer(head.toString());
+            heads.add(buffer);
+            total += buffer.length() + range[1] - range[0] + 1;
+        }
+        Buffer tail = Buffer.buffer("\r\n--" + boundary + "--\r\n");
+        long contentLength = total + tail.length();
+
+        vertx.fileSystem().open(file, new OpenOptions().setRead(true).setWrite(false).setCreate(false), reply -> {
+            if (reply.succeeded()) {
+                response.setStatusCode(206);
+                response.putHeader("content-type", "multipart/byteranges; boundary=" + boundary);
+                response.putHeader("content-length", String.valueOf(contentLength));
+                new MultipartWriter(reply.result(), ranges, heads, tail, response).writePart(0);
+            } else {
+                LOGGER.error("File could not be opened.", reply.cause());
+                response.setStatusCode(500).end();
+            }
+        });
+    }
+
+    private static class MultipartWriter {
+        private final AsyncFile file;
+        private final List<long[]> ranges;
+        private final List<Buffer> heads;
+        private final Buffer tail;
+        private final HttpServerResponse response;
+        private boolean closed;
+
+        private MultipartWriter(AsyncFile file, List<long[]> ranges, List<Buffer> heads, Buffer tail, HttpServerResponse response) {
+            this.file = file;
+            this.ranges = ranges;
+            this.heads = heads;
+            this.tail = tail;
+            this.response = response;
+            response.closeHandler(v -> close());
+        }
+
+        private void writePart(int index) {
+            if (index == ranges.size()) {
+                response.end(tail);
+                close();
+                return;
+            }
+            response.write(heads.get(index));
+            writeChunk(index, ranges.get(index)[0]);
+        }
+
+        private void writeChunk(int index, long position) {
+            if (closed) {
+                return;
+            }
+            long end = ranges.get(index)[1] + 1;
+            int length = (int) Math.min(CHUNK_SIZE, end - position);
+            file.read(Buffer.buffer(length), 0, position, length, reply -> {
+                if (reply.failed()) {
+                    LOGGER.error("File could not be read.", reply.cause());
+                    response.close();
+                    close();
+                    return;
+                }
+                if (closed) {
+                    return;
+                }
+                response.write(reply.result());
+                long next = position + length;
+                Runnable proceed = () -> {
+                    if (next == end) {
+                        writePart(index + 1);
+                    } else {
+                        writeChunk(index, next);
+                    }
+                };
+                if (response.writeQueueFull()) {
+                    response.drainHandler(v -> proceed.run());
+                } else {
+                    proceed.run();
+                }
+            });
+        }
+
+        private void close() {
+            if (!closed) {
+                closed = true;
+                file.close();
+            }
+        }
+    }
+}
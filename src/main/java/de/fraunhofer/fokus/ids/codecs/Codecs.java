@@ -0,0 +1,45 @@
+package de.fraunhofer.fokus.ids.codecs;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
+
+/**
+ * Registers the by-reference codecs on the event bus. Must be called before any service proxy is used,
+ * further calls for the same Vert.x instance, e.g. by a redeployed verticle, do nothing.
+ * @author Vincent Bohlen, vincent.bohlen@fokus.fraunhofer.de
+ */
+public class Codecs {
+
+    public static final String JSON_OBJECT = "de.fraunhofer.fokus.ids.codecs.jsonObject";
+    public static final String JSON_ARRAY = "de.fraunhofer.fokus.ids.codecs.jsonArray";
+
+    public static void register(Vertx vertx) {
+        // the event bus has no lookup of codecs and fails on registering a name twice
+        LocalMap<String, Boolean> registered = vertx.sharedData().getLocalMap(Codecs.class.getName());
+        if (registered.putIfAbsent(JSON_OBJECT, true) != null) {
+            return;
+        }
+        EventBus eventBus = vertx.eventBus();
+        eventBus.registerCodec(new ReferenceMessageCodec<JsonObject>(JSON_OBJECT, JsonObject::encode, JsonObject::new));
+        eventBus.registerCodec(new ReferenceMessageCodec<JsonArray>(JSON_ARRAY, JsonArray::encode, JsonArray::new));
+    }
+
+    /**
+     * DeliveryOptions for service proxies. The proxies send their parameters as a newly created JsonObject,
+     * so it can be handed over by reference.
+     */
+    public static DeliveryOptions proxyOptions() {
+        return new DeliveryOptions().setCodecName(JSON_OBJECT);
+    }
+
+    /**
+     * DeliveryOptions for replies of results that are not used by the replying side anymore.
+     */
+    public static DeliveryOptions replyOptions() {
+        return new DeliveryOptions().setCodecName(JSON_ARRAY);
+    }
+}
@@ -0,0 +1,279 @@
+package de.fraunhofer.fokus.ids.codecs;
+
+import io.vertx.core.MultiMap;
+import io.vertx.core.buffer.Buffer;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Keeps compressed response bodies with their headers, so a cacheable response is compressed once per version and not for every request.
+ * Entries are keyed by the request uri and the version of the body (e.g. its ETag), and evicted least recently used above MAX_BYTES.
+ * A body is kept as one raw deflate segment for gzip and deflate alike. encode frames it per request and can prepend a head that must not be cached,
+ * e.g. the header part of an IDS message with its issue date: the head is deflated on its own and ends with a sync flush,
+ * so the cached segment follows it on a byte boundary, and the checksums of both are combined.
+ * Instances are not thread safe and must be used from a single context, deflate and encode may be called from any thread.
+ * @author Vincent Bohlen, vincent.bohlen@fokus.fraunhofer.de
+ */
+public class CompressedBodyCache {
+
+    public static final String GZIP = "gzip";
+    public static final String DEFLATE = "deflate";
+    public static final String IDENTITY = "identity";
+
+    public static final long MAX_BYTES = 32 * 1024 * 1024;
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final long ADLER_BASE = 65521;
+
+    private final Map<String, CompressedBody> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+
+    /**
+     * @return the compressed body, or null if it is not cached for that version
+     */
+    public CompressedBody get(String key, String version) {
+        CompressedBody entry = entries.get(key);
+        return entry != null && entry.version.equals(version) ? entry : null;
+    }
+
+    /**
+     * @param headers the response headers except content-encoding and content-length
+     */
+    public CompressedBody put(String key, String version, MultiMap headers, Segment body) {
+        CompressedBody entry = new CompressedBody(version, headers, body);
+        CompressedBody previous = entries.put(key, entry);
+        if (previous != null) {
+            bytes -= previous.body.deflated.length();
+        }
+        bytes += body.deflated.length();
+        Iterator<CompressedBody> eldest = entries.values().iterator();
+        while (bytes > MAX_BYTES && eldest.hasNext()) {
+            bytes -= eldest.next().body.deflated.length();
+            eldest.remove();
+        }
+        return entry;
+    }
+
+    /**
+     * Chooses the content coding of the response, gzip is preferred over deflate.
+     * @param acceptEncoding the Accept-Encoding header of the request, may be null
+     * @return GZIP, DEFLATE or IDENTITY
+     */
+    public static String negotiate(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return IDENTITY;
+        }
+        boolean deflate = false;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] params = coding.trim().split(";");
+            String name = params[0].trim().toLowerCase();
+            boolean accepted = true;
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        accepted = Double.parseDouble(param.substring(2)) > 0;
+                    } catch (NumberFormatException e) {
+                        accepted = false;
+                    }
+                }
+            }
+            if (accepted && (name.equals(GZIP) || name.equals("x-gzip") || name.equals("*"))) {
+                return GZIP;
+            }
+            deflate |= accepted && name.equals(DEFLATE);
+        }
+        return deflate ? DEFLATE : IDENTITY;
+    }
+
+    /**
+     * Deflates the body chunks, blocking, so it is meant to run on a worker thread for large bodies.
+     * @return the body as the last segment of an encoded body
+     */
+    public static Segment deflate(List<Buffer> body, int level) {
+        return deflate(body, level, true);
+    }
+
+    /**
+     * Frames the head and the body as one gzip or zlib (deflate) stream.
+     * @param head the chunks sent before the body, deflated for this call, may be empty
+     * @param body the segment returned by deflate
+     */
+    public static Buffer encode(String encoding, List<Buffer> head, Segment body, int level) {
+        Segment first = deflate(head, level, false);
+        Buffer encoded = Buffer.buffer(first.deflated.length() + body.deflated.length() + 18);
+        if (GZIP.equals(encoding)) {
+            // ID1, ID2, CM deflate, no flags, no modification time, no extra flags, unknown OS
+            encoded.appendBytes(new byte[]{0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 0xff});
+            encoded.appendBuffer(first.deflated).appendBuffer(body.deflated);
+            encoded.appendIntLE((int) crc32Combine(first.crc32, body.crc32, body.length));
+            encoded.appendIntLE((int) (first.length + body.length));
+        } else {
+            // CMF deflate with a 32K window, FLG without dictionary and with a valid check
+            encoded.appendByte((byte) 0x78).appendByte((byte) 0x9c);
+            encoded.appendBuffer(first.deflated).appendBuffer(body.deflated);
+            encoded.appendInt((int) adler32Combine(first.adler32, body.adler32, body.length));
+        }
+        return encoded;
+    }
+
+    /**
+     * @param last true to end the segment with the final block, false to end it with a sync flush on a byte boundary
+     */
+    private static Segment deflate(List<Buffer> body, int level, boolean last) {
+        Deflater deflater = new Deflater(level, true);
+        CRC32 crc32 = new CRC32();
+        Adler32 adler32 = new Adler32();
+        long length = 0;
+        Buffer deflated = Buffer.buffer(Math.max(body.stream().mapToInt(Buffer::length).sum() / 4, 256));
+        byte[] chunk = new byte[CHUNK_SIZE];
+        try {
+            for (Buffer buffer : body) {
+                byte[] bytes = buffer.getBytes();
+                crc32.update(bytes);
+                adler32.update(bytes);
+                length += bytes.length;
+                deflater.setInput(bytes);
+                while (!deflater.needsInput()) {
+                    deflated.appendBytes(chunk, 0, deflater.deflate(chunk));
+                }
+            }
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    deflated.appendBytes(chunk, 0, deflater.deflate(chunk));
+                }
+            } else {
+                int count;
+                do {
+                    count = deflater.deflate(chunk, 0, chunk.length, Deflater.SYNC_FLUSH);
+                    deflated.appendBytes(chunk, 0, count);
+                } while (count == chunk.length);
+            }
+        } finally {
+            deflater.end();
+        }
+        return new Segment(deflated, crc32.getValue(), adler32.getValue(), length);
+    }
+
+    /**
+     * @return the Adler-32 of the concatenation of two inputs from their checksums, as adler32_combine of zlib
+     */
+    private static long adler32Combine(long adler1, long adler2, long length2) {
+        long remainder = length2 % ADLER_BASE;
+        long sum1 = adler1 & 0xffff;
+        long sum2 = (remainder * sum1) % ADLER_BASE;
+        sum1 += (adler2 & 0xffff) + ADLER_BASE - 1;
+        sum2 += ((adler1 >> 16) & 0xffff) + ((adler2 >> 16) & 0xffff) + ADLER_BASE - remainder;
+        if (sum1 >= ADLER_BASE) {
+            sum1 -= ADLER_BASE;
+        }
+        if (sum1 >= ADLER_BASE) {
+            sum1 -= ADLER_BASE;
+        }
+        if (sum2 >= ADLER_BASE << 1) {
+            sum2 -= ADLER_BASE << 1;
+        }
+        if (sum2 >= ADLER_BASE) {
+            sum2 -= ADLER_BASE;
+        }
+        return sum1 | (sum2 << 16);
+    }
+
+    /**
+     * @return the CRC-32 of the concatenation of two inputs from their checksums, as crc32_combine of zlib
+     */
+    private static long crc32Combine(long crc1, long crc2, long length2) {
+        if (length2 <= 0) {
+            return crc1;
+        }
+        long[] even = new long[32];
+        long[] odd = new long[32];
+        // operator for one zero bit
+        odd[0] = 0xedb88320L;
+        long row = 1;
+        for (int n = 1; n < 32; n++) {
+            odd[n] = row;
+            row <<= 1;
+        }
+        // operators for two and four zero bits
+        gf2MatrixSquare(even, odd);
+        gf2MatrixSquare(odd, even);
+        // apply length2 zero bytes to crc1
+        do {
+            gf2MatrixSquare(even, odd);
+            if ((length2 & 1) != 0) {
+                crc1 = gf2MatrixTimes(even, crc1);
+            }
+            length2 >>= 1;
+            if (length2 == 0) {
+                break;
+            }
+            gf2MatrixSquare(odd, even);
+            if ((length2 & 1) != 0) {
+                crc1 = gf2MatrixTimes(odd, crc1);
+            }
+            length2 >>= 1;
+        } while (length2 != 0);
+        return crc1 ^ crc2;
+    }
+
+    private static long gf2MatrixTimes(long[] matrix, long vector) {
+        long sum = 0;
+        for (int i = 0; vector != 0; i++, vector >>= 1) {
+            if ((vector & 1) != 0) {
+                sum ^= matrix[i];
+            }
+        }
+        return sum;
+    }
+
+    private static void gf2MatrixSquare(long[] square, long[] matrix) {
+        for (int n = 0; n < 32; n++) {
+            square[n] = gf2MatrixTimes(matrix, matrix[n]);
+        }
+    }
+
+    public static class CompressedBody {
+        private final String version;
+        private final MultiMap headers;
+        private final Segment body;
+
+        private CompressedBody(String version, MultiMap headers, Segment body) {
+            this.version = version;
+            this.headers = headers;
+            this.body = body;
+        }
+
+        public MultiMap getHeaders() {
+            return headers;
+        }
+
+        public Segment getBody() {
+            return body;
+        }
+    }
+
+    /**
+     * Raw deflate data with the length and checksums of its input.
+     */
+    public static class Segment {
+        private final Buffer deflated;
+        private final long crc32;
+        private final long adler32;
+        private final long length;
+
+        private Segment(Buffer deflated, long crc32, long adler32, long length) {
+            this.deflated = deflated;
+            this.crc32 = crc32;
+            this.adler32 = adler32;
+            this.length = length;
+        }
+    }
+}
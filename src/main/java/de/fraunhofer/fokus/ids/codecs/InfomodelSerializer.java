@@ -0,0 +1,96 @@
+package de.fraunhofer.fokus.ids.codecs;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.Json;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Serializes infomodel objects (Connector, Catalog, Resource, messages) with a JsonGenerator into chunks of CHUNK_SIZE bytes.
+ * The serialized document is held in chunks, never as one String or one contiguous buffer. Responses and broker messages
+ * write it chunk by chunk, but only after the serialization has finished, since the serialized connector is cached.
+ * The writers are built once and shared, they are immutable and thread safe.
+ * @author Vincent Bohlen, vincent.bohlen@fokus.fraunhofer.de
+ */
+public class InfomodelSerializer {
+
+    public static final int CHUNK_SIZE = 64 * 1024;
+
+    private static final ObjectMapper MAPPER = Json.mapper.copy().setSerializationInclusion(JsonInclude.Include.NON_NULL);
+    private static final ObjectWriter PRETTY_WRITER = MAPPER.writerWithDefaultPrettyPrinter();
+    private static final ObjectWriter COMPACT_WRITER = MAPPER.writer();
+
+    /**
+     * @return the UTF-8 encoded chunks of the serialized value
+     */
+    public static List<Buffer> serialize(Object value, boolean pretty) throws IOException {
+        List<Buffer> chunks = new ArrayList<>();
+        serialize(value, pretty, chunks::add);
+        return chunks;
+    }
+
+    /**
+     * Serializes the value and hands every chunk to the handler before serializing further.
+     */
+    public static void serialize(Object value, boolean pretty, Handler<Buffer> chunkHandler) throws IOException {
+        ObjectWriter writer = pretty ? PRETTY_WRITER : COMPACT_WRITER;
+        try (ChunkedOutputStream out = new ChunkedOutputStream(chunkHandler);
+             JsonGenerator generator = MAPPER.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            if (pretty) {
+                generator.useDefaultPrettyPrinter();
+            }
+            writer.writeValue(generator, value);
+        }
+    }
+
+    private static class ChunkedOutputStream extends OutputStream {
+
+        private final Handler<Buffer> chunkHandler;
+        private Buffer chunk = Buffer.buffer(CHUNK_SIZE);
+
+        private ChunkedOutputStream(Handler<Buffer> chunkHandler) {
+            this.chunkHandler = chunkHandler;
+        }
+
+        @Override
+        public void write(int b) {
+            chunk.appendByte((byte) b);
+            emitIfFull();
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            while (len > 0) {
+                int n = Math.min(len, CHUNK_SIZE - chunk.length());
+                chunk.appendBytes(b, off, n);
+                off += n;
+                len -= n;
+                emitIfFull();
+            }
+        }
+
+        @Override
+        public void close() {
+            if (chunk != null && chunk.length() > 0) {
+                chunkHandler.handle(chunk);
+            }
+            chunk = null;
+        }
+
+        private void emitIfFull() {
+            if (chunk.length() >= CHUNK_SIZE) {
+                chunkHandler.handle(chunk);
+                chunk = Buffer.buffer(CHUNK_SIZE);
+            }
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package de.fraunhofer.fokus.ids.codecs;
+
+import io.vertx.core.MultiMap;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.streams.WriteStream;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Encodes IDS multipart messages (form-data with the parts "header" and "payload").
+ * The part bodies are kept as the given buffers. toBuffers hands them out without copying,
+ * toBuffer copies them once into a buffer of the exact message size.
+ * @author Vincent Bohlen, vincent.bohlen@fokus.fraunhofer.de
+ */
+public class MultipartEncoder {
+
+    public static final String IDS_BOUNDARY = "IDSMSGPART";
+    public static final String JSON = "application/json; charset=UTF-8";
+
+    private static final String CRLF = "\r\n";
+
+    private String boundary = IDS_BOUNDARY;
+    private String contentType;
+    private MultiMap headers = MultiMap.caseInsensitiveMultiMap();
+    private List<Buffer> buffers = new ArrayList<>();
+    private List<Integer> parts = new ArrayList<>();
+    private int length;
+
+    public MultipartEncoder setBoundary(String boundary) {
+        if (!buffers.isEmpty()) {
+            throw new IllegalStateException("The boundary must be set before adding parts.");
+        }
+        this.boundary = boundary;
+        return this;
+    }
+
+    /**
+     * Overrides the content type of the message, which defaults to multipart/form-data with the boundary.
+     */
+    public MultipartEncoder setContentType(String contentType) {
+        this.contentType = contentType;
+        return this;
+    }
+
+    /**
+     * Adds a header to be sent along with the message, e.g. the Link header of a paged catalog.
+     */
+    public MultipartEncoder addHeader(String name, String value) {
+        headers.add(name, value);
+        return this;
+    }
+
+    public MultipartEncoder addPart(String name, String contentType, String body) {
+        return addPart(name, contentType, Buffer.buffer(body, StandardCharsets.UTF_8.name()));
+    }
+
+    public MultipartEncoder addPart(String name, String contentType, Buffer body) {
+        return addPart(name, contentType, Collections.singletonList(body));
+    }
+
+    /**
+     * @param body the part body in chunks, e.g. as produced by the InfomodelSerializer
+     */
+    public MultipartEncoder addPart(String name, String contentType, List<Buffer> body) {
+        parts.add(buffers.size());
+        add(Buffer.buffer("--" + boundary + CRLF
+                + "Content-Disposition: form-data; name=\"" + name + "\"" + CRLF
+                + "Content-Type: " + contentType + CRLF
+                + "Content-Transfer-Encoding: 8bit" + CRLF
+                + CRLF));
+        body.forEach(this::add);
+        add(Buffer.buffer(CRLF));
+        return this;
+    }
+
+    public String getContentType() {
+        return contentType != null ? contentType : "multipart/form-data; boundary=" + boundary;
+    }
+
+    public MultiMap getHeaders() {
+        return headers;
+    }
+
+    /**
+     * @return the number of bytes of the complete message
+     */
+    public int length() {
+        return length + closeDelimiter().length();
+    }
+
+    public Buffer toBuffer() {
+        Buffer buffer = Buffer.buffer(length());
+        buffers.forEach(buffer::appendBuffer);
+        return buffer.appendBuffer(closeDelimiter());
+    }
+
+    /**
+     * @return the message in chunks, the part bodies are the given buffers
+     */
+    public List<Buffer> toBuffers() {
+        List<Buffer> message = new ArrayList<>(buffers);
+        message.add(closeDelimiter());
+        return message;
+    }
+
+    /**
+     * Writes the message chunk by chunk to the stream and ends it, see write.
+     */
+    public void writeTo(WriteStream<Buffer> stream) {
+        write(stream, toBuffers().iterator());
+    }
+
+    /**
+     * Writes the chunks to the stream and ends it. While the write queue of the stream is full,
+     * writing waits for the drain handler, so the chunks are not copied into the write queue all at once.
+     */
+    public static void write(WriteStream<Buffer> stream, Iterator<Buffer> chunks) {
+        while (chunks.hasNext()) {
+            stream.write(chunks.next());
+            if (chunks.hasNext() && stream.writeQueueFull()) {
+                stream.drainHandler(v -> write(stream, chunks));
+                return;
+            }
+        }
+        stream.end();
+    }
+
+    /**
+     * @return the chunks of the first count parts
+     */
+    public List<Buffer> head(int count) {
+        return new ArrayList<>(buffers.subList(0, count < parts.size() ? parts.get(count) : buffers.size()));
+    }
+
+    /**
+     * @return the chunks of the message after the first count parts, i.e. toBuffers without head(count)
+     */
+    public List<Buffer> tail(int count) {
+        List<Buffer> message = new ArrayList<>(buffers.subList(count < parts.size() ? parts.get(count) : buffers.size(), buffers.size()));
+        message.add(closeDelimiter());
+        return message;
+    }
+
+    private void add(Buffer buffer) {
+        buffers.add(buffer);
+        length += buffer.length();
+    }
+
+    private Buffer closeDelimiter() {
+        return Buffer.buffer("--" + boundary + "--" + CRLF);
+    }
+}
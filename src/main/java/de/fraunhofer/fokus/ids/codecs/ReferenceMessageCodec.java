@@ -0,0 +1,55 @@
+package de.fraunhofer.fokus.ids.codecs;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.MessageCodec;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.Function;
+
+/**
+ * MessageCodec that hands the sent object itself to local consumers instead of a copy.
+ * Only objects that are not modified by the sender after sending may be sent with it.
+ * Messages to other cluster nodes are encoded with the given wire encoder as length prefixed UTF-8 string.
+ * @author Vincent Bohlen, vincent.bohlen@fokus.fraunhofer.de
+ */
+public class ReferenceMessageCodec<T> implements MessageCodec<T, T> {
+
+    private final String name;
+    private final Function<T, String> encoder;
+    private final Function<String, T> decoder;
+
+    public ReferenceMessageCodec(String name, Function<T, String> encoder, Function<String, T> decoder) {
+        this.name = name;
+        this.encoder = encoder;
+        this.decoder = decoder;
+    }
+
+    @Override
+    public void encodeToWire(Buffer buffer, T t) {
+        byte[] bytes = encoder.apply(t).getBytes(StandardCharsets.UTF_8);
+        buffer.appendInt(bytes.length);
+        buffer.appendBytes(bytes);
+    }
+
+    @Override
+    public T decodeFromWire(int pos, Buffer buffer) {
+        int length = buffer.getInt(pos);
+        pos += 4;
+        return decoder.apply(buffer.getString(pos, pos + length, StandardCharsets.UTF_8.name()));
+    }
+
+    @Override
+    public T transform(T t) {
+        return t;
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public byte systemCodecID() {
+        return -1;
+    }
+}
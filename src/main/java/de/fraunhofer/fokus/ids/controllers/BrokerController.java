@@ -32,7 +32,7 @@ public class BrokerController {
 
         brokerManager.findById(id, findIdReply -> {
             if(findIdReply.succeeded()){
-                brokerService.subscribe(findIdReply.result().getString("url"), subscribeReply -> {
+                brokerService.subscribe(findIdReply.result().getUrl(), subscribeReply -> {
                     if(subscribeReply.succeeded()) {
                         LOGGER.info("Registration at broker successful.");
                         brokerManager.register(id, registrationReply -> {
@@ -47,7 +47,7 @@ public class BrokerController {
                                 //If this fails, the connector is registered to the broker, but  the broker is not marked registered in the database
                                 //therefore try to clean the state. If this fails, log the inconsistent state
                                 LOGGER.error(registrationReply.cause());
-                                brokerService.unsubscribe(findIdReply.result().getString("url"), reply -> {
+                                brokerService.unsubscribe(findIdReply.result().getUrl(), reply -> {
                                     if(reply.failed()){
                                         LOGGER.error("INCONSISTENT STATE: Broker could not be unregistered at remote but was unregistered in database.");
                                     }
@@ -86,7 +86,7 @@ public class BrokerController {
 
         brokerManager.findById(id, findIdReply -> {
             if(findIdReply.succeeded()){
-                brokerService.unsubscribe(findIdReply.result().getString("url"), unsubscribeReply -> {
+                brokerService.unsubscribe(findIdReply.result().getUrl(), unsubscribeReply -> {
                     if(unsubscribeReply.succeeded()) {
                         brokerManager.unregister(id, unregisterReply -> {
                             if (unregisterReply.succeeded()) {
@@ -98,7 +98,7 @@ public class BrokerController {
                             } else {
                                 //If this fails, the connector is not registered to the broker, but the broker is marked registered in the database
                                 //therefore try to clean the state. If this fails, log the inconsistent state
-                                brokerService.subscribe(findIdReply.result().getString("url"), reply -> {
+                                brokerService.subscribe(findIdReply.result().getUrl(), reply -> {
                                     if(reply.failed()){
                                         LOGGER.error("INCONSISTENT STATE: Broker could not be registered at remote but was registered in database.");
                                     }
@@ -164,8 +164,8 @@ public class BrokerController {
     public void delete(long id, Handler<AsyncResult<JsonObject>> resultHandler){
         brokerManager.findById(id, findIdReply -> {
             if(findIdReply.succeeded()) {
-                if (findIdReply.result().getString("status").equals(BrokerStatus.REGISTERED.name())) {
-                    brokerService.unsubscribe(findIdReply.result().getString("url"), unsubscribeReply -> {
+                if (findIdReply.result().getStatus() == BrokerStatus.REGISTERED) {
+                    brokerService.unsubscribe(findIdReply.result().getUrl(), unsubscribeReply -> {
                         if (unsubscribeReply.succeeded()
                                 || unsubscribeReply.cause().getClass().equals(MalformedURLException.class)
                                 || unsubscribeReply.cause().getClass().equals(UnknownHostException.class)) {
@@ -179,7 +179,7 @@ public class BrokerController {
                                 } else {
                                     //If this fails, the connector is not registered to the broker, but the broker is marked still in the database
                                     //therefore try to clean the state. If this fails, log the inconsistent state
-                                    brokerService.subscribe(findIdReply.result().getString("url"), reply -> {
+                                    brokerService.subscribe(findIdReply.result().getUrl(), reply -> {
                                         if (reply.failed()) {
                                             LOGGER.error("INCONSISTENT STATE: Broker could not be registered at remote but is registered in database.");
                                         }
@@ -1,34 +1,33 @@
 package de.fraunhofer.fokus.ids.controllers;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
+import de.fraunhofer.fokus.ids.codecs.ByteRanges;
+import de.fraunhofer.fokus.ids.codecs.InfomodelSerializer;
+import de.fraunhofer.fokus.ids.codecs.MultipartEncoder;
 import de.fraunhofer.fokus.ids.enums.FileType;
 import de.fraunhofer.fokus.ids.messages.ResourceRequest;
 import de.fraunhofer.fokus.ids.models.*;
 import de.fraunhofer.fokus.ids.persistence.entities.DataAsset;
-import de.fraunhofer.fokus.ids.persistence.entities.DataSource;
-import de.fraunhofer.fokus.ids.persistence.managers.DataAssetManager;
-import de.fraunhofer.fokus.ids.persistence.managers.DataSourceManager;
 import de.fraunhofer.fokus.ids.services.IDSService;
-import de.fraunhofer.fokus.ids.services.datasourceAdapter.DataSourceAdapterService;
-import de.fraunhofer.iais.eis.Connector;
+import de.fraunhofer.fokus.ids.services.PayloadCache;
+import de.fraunhofer.fokus.ids.services.PayloadStream;
+import de.fraunhofer.fokus.ids.services.ResolutionCache;
+import de.fraunhofer.fokus.ids.services.ResolutionCache.Resolution;
+import de.fraunhofer.fokus.ids.services.SelfDescriptionCache;
+import de.fraunhofer.fokus.ids.services.datasourceAdapter.AdapterFileClient;
+import de.fraunhofer.iais.eis.Catalog;
 import de.fraunhofer.iais.eis.SelfDescriptionResponse;
 import io.vertx.core.*;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClientResponse;
 import io.vertx.core.json.Json;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
-import org.apache.http.HttpEntity;
-import org.apache.http.entity.ContentType;
-import org.apache.http.entity.mime.MultipartEntityBuilder;
-import org.apache.http.entity.mime.content.ContentBody;
-import org.apache.http.entity.mime.content.StringBody;
-import org.apache.http.impl.client.FutureRequestExecutionMetrics;
-
-import java.io.ByteArrayOutputStream;
-import java.io.File;
+
 import java.io.IOException;
-import java.io.OutputStream;
-import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * @author Vincent Bohlen, vincent.bohlen@fokus.fraunhofer.de
@@ -36,29 +35,38 @@ import java.nio.charset.StandardCharsets;
 public class ConnectorController {
 
 	private Logger LOGGER = LoggerFactory.getLogger(ConnectorController.class.getName());
+	private Vertx vertx;
 	private IDSService idsService;
-	private DataAssetManager dataAssetManager;
-	private DataSourceManager dataSourceManager;
-	private DataSourceAdapterService dataSourceAdapterService;
+	private SelfDescriptionCache selfDescriptionCache;
+	private ResolutionCache resolutionCache;
+	private AdapterFileClient adapterFileClient;
+	private PayloadCache payloadCache;
 
 	public ConnectorController(Vertx vertx){
+		this.vertx = vertx;
 		this.idsService = new IDSService(vertx);
-		this.dataAssetManager = new DataAssetManager(vertx);
-		this.dataSourceManager = new DataSourceManager(vertx);
-		this.dataSourceAdapterService = DataSourceAdapterService.createProxy(vertx, Constants.DATASOURCEADAPTER_SERVICE);
+		this.selfDescriptionCache = new SelfDescriptionCache(vertx, idsService);
+		this.resolutionCache = new ResolutionCache(vertx);
+		this.adapterFileClient = new AdapterFileClient(vertx);
+		this.payloadCache = new PayloadCache(vertx);
 		Json.prettyMapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
 	}
 
-	public void data(long id, String extension, Handler<AsyncResult<File>> resultHandler) {
+	/**
+	 * @param range the Range header of the request, may be null
+	 * @param ifRange the If-Range header of the request, may be null
+	 * @param resultHandler receives the cached file, on which the range is still to be applied, or the paused body of the adapter response
+	 */
+	public void data(long id, String extension, String range, String ifRange, Handler<AsyncResult<Payload>> resultHandler) {
 		if(extension == null) {
-			payload(id, resultHandler);
+			payload(id, range, ifRange, resultHandler);
 		}
 		else {
-			payloadContent(id,extension, resultHandler);
+			payloadContent(id,extension, range, ifRange, resultHandler);
 		}
 	}
 
-	public void about(String extension, Handler<AsyncResult<ReturnObject>> resultHandler) {
+	public void about(String extension, Handler<AsyncResult<MultipartEncoder>> resultHandler) {
 		FileType type;
 		try{
 			type = FileType.valueOf(extension.toUpperCase());
@@ -68,91 +76,204 @@ public class ConnectorController {
 		}
 		String contentType = getContentType(type);
 
-		Future<Connector> connectorFuture = Future.future();
-		idsService.getConnector(connectorFuture.completer());
+		Future<List<Buffer>> payloadFuture = Future.future();
+		selfDescriptionCache.getPayload(payloadFuture.completer());
 		Future<SelfDescriptionResponse> responseFuture = Future.future();
 		idsService.getSelfDescriptionResponse(responseFuture.completer());
+		Future<List<String>> linksFuture = Future.future();
+		idsService.getCatalogLinks(null, linksFuture.completer());
 
-		CompositeFuture.all(connectorFuture,responseFuture).setHandler( reply -> {
+		CompositeFuture.all(payloadFuture,responseFuture,linksFuture).setHandler( reply -> {
 			if (reply.succeeded()) {
-				ContentBody cb = new StringBody(Json.encodePrettily(responseFuture.result()), ContentType.create("application/json"));
-				ContentBody result = new StringBody(Json.encodePrettily(connectorFuture.result()), ContentType.create("application/json"));
+				MultipartEncoder message = new MultipartEncoder()
+						.setContentType(contentType)
+						.addPart("header", MultipartEncoder.JSON, Json.encodePrettily(responseFuture.result()))
+						.addPart("payload", MultipartEncoder.JSON, payloadFuture.result());
+				linksFuture.result().forEach(link -> message.addHeader("Link", link));
+				resultHandler.handle(Future.succeededFuture(message));
+			}
+			else {
+				LOGGER.error("Connector Object could not be retrieved.",reply.cause());
+				resultHandler.handle(Future.failedFuture(reply.cause()));
+			}
+		});
+	}
+
+	/**
+	 * @param resultHandler receives a message with only the header part, stamped with the current issue date,
+	 * to be sent in front of the cached remainder of an /about response
+	 */
+	public void header(Handler<AsyncResult<MultipartEncoder>> resultHandler) {
+		idsService.getSelfDescriptionResponse(reply -> {
+			if (reply.succeeded()) {
+				resultHandler.handle(Future.succeededFuture(new MultipartEncoder()
+						.addPart("header", MultipartEncoder.JSON, Json.encodePrettily(reply.result()))));
+			}
+			else {
+				LOGGER.error("Self description response could not be created.",reply.cause());
+				resultHandler.handle(Future.failedFuture(reply.cause()));
+			}
+		});
+	}
 
-				MultipartEntityBuilder multipartEntityBuilder = MultipartEntityBuilder.create()
-						.setBoundary("IDSMSGPART")
-						.setCharset(StandardCharsets.UTF_8)
-						.setContentType(ContentType.APPLICATION_JSON)
-						.addPart("header", cb)
-						.addPart("payload", result);
+	/**
+	 * @return the breaker state, downloads waiting for the adapter and rejection counts of the adapter downloads by data source type
+	 */
+	public JsonObject getDownloadHealth() {
+		return adapterFileClient.getStats();
+	}
 
-				ByteArrayOutputStream out = new ByteArrayOutputStream();
+	/**
+	 * @return the utilization and wait queue of the client pools the adapter downloads use by adapter endpoint
+	 */
+	public JsonObject getDownloadPools() {
+		return adapterFileClient.getPoolStats();
+	}
+
+	/**
+	 * @param after the page starts after this data asset id, null for the first page
+	 */
+	public void catalog(Long after, Handler<AsyncResult<MultipartEncoder>> resultHandler) {
+		Future<Catalog> catalogFuture = Future.future();
+		idsService.getCatalogPage(after, catalogFuture.completer());
+		Future<SelfDescriptionResponse> responseFuture = Future.future();
+		idsService.getSelfDescriptionResponse(responseFuture.completer());
+		Future<List<String>> linksFuture = Future.future();
+		idsService.getCatalogLinks(after, linksFuture.completer());
+
+		CompositeFuture.all(catalogFuture,responseFuture,linksFuture).setHandler( reply -> {
+			if (reply.succeeded()) {
 				try {
-					multipartEntityBuilder.build().writeTo(out);
+					// a page holds at most CATALOG_PAGE_SIZE resources, so it is serialized right away
+					MultipartEncoder message = new MultipartEncoder()
+							.addPart("header", MultipartEncoder.JSON, Json.encodePrettily(responseFuture.result()))
+							.addPart("payload", MultipartEncoder.JSON, InfomodelSerializer.serialize(catalogFuture.result(), true));
+					linksFuture.result().forEach(link -> message.addHeader("Link", link));
+					resultHandler.handle(Future.succeededFuture(message));
 				} catch (IOException e) {
-					LOGGER.error(e);
-					resultHandler.handle(Future.failedFuture(e.getMessage()));
+					LOGGER.error("Catalog page could not be serialized.", e);
+					resultHandler.handle(Future.failedFuture(e));
 				}
-				resultHandler.handle(Future.succeededFuture(new ReturnObject(out.toString(), contentType)));
 			}
 			else {
-				LOGGER.error("Connector Object could not be retrieved.",reply.cause());
+				LOGGER.error("Catalog page could not be retrieved.",reply.cause());
 				resultHandler.handle(Future.failedFuture(reply.cause()));
 			}
 		});
 	}
 
-	private void payload(Long id, Handler<AsyncResult<File>> resultHandler) {
-		getPayload(id, FileType.MULTIPART, resultHandler);
+	private void payload(Long id, String range, String ifRange, Handler<AsyncResult<Payload>> resultHandler) {
+		getPayload(id, FileType.MULTIPART, range, ifRange, resultHandler);
 	}
 
-	private void payloadContent(Long id, String extension, Handler<AsyncResult<File>> resultHandler) {
+	private void payloadContent(Long id, String extension, String range, String ifRange, Handler<AsyncResult<Payload>> resultHandler) {
 		if(extension.equals("json")) {
-			getPayload(id, FileType.JSON, resultHandler);
+			getPayload(id, FileType.JSON, range, ifRange, resultHandler);
+		}
+		else if(extension.equals("txt")) {
+			getPayload(id, FileType.TXT, range, ifRange, resultHandler);
 		}
-		if(extension.equals("txt")) {
-			getPayload(id, FileType.TXT, resultHandler);
+		else {
+			getPayload(id, FileType.MULTIPART, range, ifRange, resultHandler);
 		}
-		getPayload(id, FileType.MULTIPART, resultHandler);
 	}
 
-	private void getPayload(Long id, FileType fileType, Handler<AsyncResult<File>> resultHandler) {
-
-		dataAssetManager.findById(id, reply -> {
-			if (reply.succeeded()) {
-				DataAsset dataAsset = Json.decodeValue(reply.result().toString(), DataAsset.class);
-
-				dataSourceManager.findById(dataAsset.getSourceID(), reply2 -> {
-					if(reply2.succeeded()){
-						DataSource dataSource = Json.decodeValue(reply2.result().toString(), DataSource.class);
-
-						ResourceRequest request = new ResourceRequest();
-						request.setDataSource(dataSource);
-						request.setDataAsset(dataAsset);
-						request.setFileType(fileType);
+	private void getPayload(Long id, FileType fileType, String range, String ifRange, Handler<AsyncResult<Payload>> resultHandler) {
+		// requests arriving while the payload is downloaded attach to that download without any lookup, ranges wait for the complete file
+		payloadCache.join(id, fileType, range != null, joined -> {
+			if(joined.failed() || joined.result() != null){
+				resultHandler.handle(joined);
+				return;
+			}
+			resolutionCache.resolve(id, reply -> {
+				if (reply.succeeded()) {
+					Resolution resolution = reply.result();
+					DataAsset dataAsset = resolution.getDataAsset();
 
-						dataSourceAdapterService.getFile(dataSource.getDatasourceType(), new JsonObject(Json.encode(request)), reply3 -> {
-							if(reply3.succeeded()){
-								resultHandler.handle(Future.succeededFuture(new File(reply3.result())));
+					// a streamed payload has no Last-Modified, so only an ETag in If-Range can match
+					if(range != null && ByteRanges.ifRange(ifRange, PayloadCache.etag(id, fileType, dataAsset.getVersion()), null)){
+						payloadCache.get(id, fileType, dataAsset.getVersion(), cached -> {
+							if(cached.succeeded() && cached.result() != null){
+								resultHandler.handle(Future.succeededFuture(cached.result()));
 							}
 							else{
-								LOGGER.error("FileContent could not be retrieved.",reply3.cause());
-								resultHandler.handle(Future.failedFuture(reply3.cause()));
+								getRange(resolution, fileType, range, resultHandler);
 							}
 						});
 					}
 					else{
-						LOGGER.error("DataAsset could not be retrieved.",reply2.cause());
-						resultHandler.handle(Future.failedFuture(reply2.cause()));
+						payloadCache.fetch(id, fileType, dataAsset.getVersion(), fetched -> requestPayload(resolution, fileType, null, fetched), resultHandler);
 					}
-				});
+				}
+				else {
+					resultHandler.handle(Future.failedFuture(reply.cause()));
+				}
+			});
+		});
+	}
+
+	/**
+	 * Forwards the range to the adapter. If the adapter ignores it, the payload is read into the cache first and the range is served from there.
+	 */
+	private void getRange(Resolution resolution, FileType fileType, String range, Handler<AsyncResult<Payload>> resultHandler) {
+		DataAsset dataAsset = resolution.getDataAsset();
+		requestPayload(resolution, fileType, range, reply -> {
+			if(reply.succeeded()){
+				HttpClientResponse upstream = reply.result();
+				if(upstream.statusCode() == 206){
+					resultHandler.handle(Future.succeededFuture(partialPayload(dataAsset, fileType, upstream)));
+				}
+				else{
+					payloadCache.store(dataAsset.getId(), fileType, dataAsset.getVersion(), upstream, resultHandler);
+				}
 			}
-			else {
-				LOGGER.error("DataAsset could not be read.",reply.cause());
+			else{
 				resultHandler.handle(Future.failedFuture(reply.cause()));
 			}
 		});
 	}
 
+	/**
+	 * @param range the Range header to forward, may be null
+	 */
+	private void requestPayload(Resolution resolution, FileType fileType, String range, Handler<AsyncResult<HttpClientResponse>> resultHandler) {
+		ResourceRequest request = new ResourceRequest();
+		request.setDataSource(resolution.getDataSource());
+		request.setDataAsset(resolution.getDataAsset());
+		request.setFileType(fileType);
+
+		MultiMap headers = MultiMap.caseInsensitiveMultiMap();
+		if(range != null){
+			headers.add("Range", range);
+		}
+		adapterFileClient.getFile(resolution.getDataSource().getDatasourceType(), resolution.getHost(), resolution.getPort(), JsonObject.mapFrom(request), headers, reply -> {
+			if(reply.succeeded()){
+				resultHandler.handle(Future.succeededFuture(reply.result()));
+			}
+			else{
+				LOGGER.error("FileContent could not be retrieved.",reply.cause());
+				// the adapter may have moved, it is resolved again with the next request
+				resolutionCache.invalidate(resolution.getDataAsset().getId());
+				resultHandler.handle(Future.failedFuture(reply.cause()));
+			}
+		});
+	}
+
+	private Payload partialPayload(DataAsset dataAsset, FileType fileType, HttpClientResponse upstream) {
+		MultiMap headers = MultiMap.caseInsensitiveMultiMap();
+		for(String header : Arrays.asList("content-type", "content-length", "content-range", "content-disposition")){
+			String value = upstream.getHeader(header);
+			if(value != null){
+				headers.add(header, value);
+			}
+		}
+		// partial bodies are not cached
+		Payload payload = Payload.fromStream(new PayloadStream(vertx, upstream), headers);
+		payload.setStatusCode(206);
+		payload.setETag(PayloadCache.etag(dataAsset.getId(), fileType, dataAsset.getVersion()));
+		return payload;
+	}
+
 	private String getContentType(FileType fileType) {
 		if(fileType.equals(FileType.TTL)) {
 			return "text/turtle";
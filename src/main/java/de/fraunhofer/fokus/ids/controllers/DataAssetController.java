@@ -11,14 +11,16 @@ import de.fraunhofer.fokus.ids.persistence.enums.JobStatus;
 import de.fraunhofer.fokus.ids.persistence.managers.DataAssetManager;
 import de.fraunhofer.fokus.ids.persistence.managers.DataSourceManager;
 import de.fraunhofer.fokus.ids.persistence.managers.JobManager;
+import de.fraunhofer.fokus.ids.persistence.service.RowStream;
+import de.fraunhofer.fokus.ids.persistence.util.RowMapper;
 import de.fraunhofer.fokus.ids.services.datasourceAdapter.DataSourceAdapterService;
 import io.vertx.core.*;
 import io.vertx.core.eventbus.Message;
-import io.vertx.core.json.Json;
-import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
+
+import java.util.List;
 /**
  * @author Vincent Bohlen, vincent.bohlen@fokus.fraunhofer.de
  */
@@ -40,36 +42,17 @@ public class DataAssetController {
     }
 
     public void counts(Handler<AsyncResult<JsonObject>> resultHandler) {
-
-        Future<Long> count = Future.future();
-        dataAssetManager.count(reply -> {
-            if (reply.succeeded()) {
-                count.complete(reply.result());
-            } else {
-                LOGGER.error("Count could not be queried.\n\n" + reply.cause());
-                count.fail(reply.cause());
-            }
-        });
-
-        Future<Long> countPublished = Future.future();
-        dataAssetManager.countPublished(reply -> {
+        dataAssetManager.counts(reply -> {
             if (reply.succeeded()) {
-                countPublished.complete(reply.result());
-            } else {
-                LOGGER.error("Published count could not be queried.\n\n" + reply.cause());
-                countPublished.fail(reply.cause());
-            }
-        });
-
-        CompositeFuture.all(count, countPublished).setHandler(ar -> {
-            if (ar.succeeded()) {
+                JsonObject counts = reply.result();
                 JsonObject jO = new JsonObject();
-                jO.put("dacount", count.result());
-                jO.put("publishedcount", countPublished.result());
+                jO.put("dacount", counts.getLong("total"));
+                jO.put("publishedcount", counts.getJsonObject("status").getLong(DataAssetStatus.PUBLISHED.name()));
+                jO.put("statuscounts", counts.getJsonObject("status"));
                 resultHandler.handle(Future.succeededFuture(jO));
             } else {
-                LOGGER.error("Composite Future failed.\n\n" + ar.cause());
-                resultHandler.handle(Future.failedFuture(ar.cause()));
+                LOGGER.error("Counts could not be retrieved.\n\n" + reply.cause());
+                resultHandler.handle(Future.failedFuture(reply.cause()));
             }
         });
     }
@@ -82,12 +65,10 @@ public class DataAssetController {
             jO.put("text", "Bitte geben Sie eine Resource-ID ein!");
             resultHandler.handle(Future.succeededFuture(jO));
         } else {
-            jobManager.add(new JsonObject(Json.encode(dataAssetDescription)), jobReply -> {
+            jobManager.add(dataAssetDescription, JobStatus.RUNNING, jobReply -> {
                 if (jobReply.succeeded()) {
-                    long jobId = jobReply.result().getLong("id");
+                    long jobId = jobReply.result();
                     LOGGER.info("Starting Job with ID: " + jobId);
-                    jobManager.updateStatus(jobId, JobStatus.RUNNING, statusUpdateReply -> {
-                    });
                     initiateDataAssetCreation(da -> createDataAsset(jobId, da), dataAssetDescription);
                     JsonObject jO = new JsonObject();
                     jO.put("status", "success");
@@ -105,31 +86,25 @@ public class DataAssetController {
     }
 
     private void initiateDataAssetCreation(Handler<AsyncResult<DataAsset>> next, DataAssetDescription dataAssetDescription) {
-        dataAssetManager.addInitial(initCreateReply -> {
+        dataAssetManager.addInitial(Integer.toUnsignedLong(dataAssetDescription.getSourceId()), initCreateReply -> {
             if (initCreateReply.succeeded()) {
-                dataSourceManager.findById(Integer.toUnsignedLong(dataAssetDescription.getSourceId()), dataSourceReply -> {
-                    if (dataSourceReply.succeeded()) {
-                        DataSource dataSource = Json.decodeValue(dataSourceReply.result().toString(), DataSource.class);
-
-                        DataAssetCreateMessage mes = new DataAssetCreateMessage();
-                        mes.setData(new JsonObject(dataAssetDescription.getData()));
-                        mes.setDataSource(dataSource);
-                        mes.setDataAssetId(initCreateReply.result());
-
-                        dataSourceAdapterService.createDataAsset(dataSource.getDatasourceType(), new JsonObject(Json.encode(mes)), dataAssetCreateReply -> {
-                            if (dataAssetCreateReply.succeeded()) {
-                                if (dataAssetCreateReply.result() == null) {
-                                    cleanUpDataAssetDummy(next, initCreateReply.result(), dataAssetCreateReply.cause());
-                                } else {
-                                    next.handle(Future.succeededFuture(Json.decodeValue(dataAssetCreateReply.result().toString(), DataAsset.class)));
-                                }
-                            } else {
-                                cleanUpDataAssetDummy(next, initCreateReply.result(), dataAssetCreateReply.cause());
-                            }
-                        });
+                long dataAssetId = initCreateReply.result().getLong("id");
+                DataSource dataSource = RowMapper.DATA_SOURCE.map(initCreateReply.result().getJsonObject("dataSource"));
+
+                DataAssetCreateMessage mes = new DataAssetCreateMessage();
+                mes.setData(new JsonObject(dataAssetDescription.getData()));
+                mes.setDataSource(dataSource);
+                mes.setDataAssetId(dataAssetId);
+
+                dataSourceAdapterService.createDataAsset(dataSource.getDatasourceType(), JsonObject.mapFrom(mes), dataAssetCreateReply -> {
+                    if (dataAssetCreateReply.succeeded()) {
+                        if (dataAssetCreateReply.result() == null) {
+                            cleanUpDataAssetDummy(next, dataAssetId, dataAssetCreateReply.cause());
+                        } else {
+                            next.handle(Future.succeededFuture(RowMapper.DATA_ASSET.map(dataAssetCreateReply.result())));
+                        }
                     } else {
-                        LOGGER.error(dataSourceReply.cause());
-                        next.handle(Future.failedFuture(dataSourceReply.cause()));
+                        cleanUpDataAssetDummy(next, dataAssetId, dataAssetCreateReply.cause());
                     }
                 });
             } else {
@@ -155,7 +130,7 @@ public class DataAssetController {
 		if (res.succeeded()) {
 			LOGGER.info("DataAsset was successfully created.");
 
-			dataAssetManager.add(new JsonObject(Json.encode(res.result())), reply -> {
+			dataAssetManager.add(res.result(), reply -> {
 				if (reply.succeeded()) {
 					LOGGER.info("DataAsset was successfully inserted to the DB.");
 					jobManager.updateStatus(jobId, JobStatus.FINISHED, reply2 -> {});
@@ -206,10 +181,10 @@ public class DataAssetController {
 	public void delete(Long id, Handler<AsyncResult<JsonObject>> resultHandler) {
 		dataAssetManager.findById(id, dataAssetReply -> {
 			if(dataAssetReply.succeeded()){
-				dataSourceManager.findById(Json.decodeValue(dataAssetReply.result().toString(), DataAsset.class).getSourceID(), reply2 -> {
+				dataSourceManager.findById(dataAssetReply.result().getSourceID(), reply2 -> {
 					if(reply2.succeeded()){
 						Future<JsonObject> serviceDeleteFuture = Future.future();
-						dataSourceAdapterService.delete(reply2.result().getString("datasourcetype"), id, serviceDeleteFuture.completer());
+						dataSourceAdapterService.delete(reply2.result().getDatasourceType(), id, serviceDeleteFuture.completer());
 
 						Future<Void> databaseDeleteFuture = Future.future();
 						dataAssetManager.delete(id, databaseDeleteFuture.completer());
@@ -237,7 +212,7 @@ public class DataAssetController {
 		});
 	}
 
-	public void index(Handler<AsyncResult<JsonArray>> resultHandler) {
+	public void index(Handler<AsyncResult<List<DataAsset>>> resultHandler) {
 		dataAssetManager.findAll(reply -> {
 			if (reply.succeeded()) {
 				resultHandler.handle(Future.succeededFuture(reply.result()));
@@ -250,6 +225,22 @@ public class DataAssetController {
 		});
 	}
 
+	public void page(DataAssetStatus status, String sourceId, Long after, int limit, Handler<AsyncResult<JsonObject>> resultHandler) {
+		dataAssetManager.findPage(status == null ? null : status.ordinal(), sourceId, after, limit, reply -> {
+			if (reply.succeeded()) {
+				resultHandler.handle(Future.succeededFuture(reply.result().toJson(JsonObject::mapFrom)));
+			}
+			else {
+				LOGGER.error("Page Future could not be completed.", reply.cause());
+				resultHandler.handle(Future.failedFuture(reply.cause()));
+			}
+		});
+	}
+
+	public RowStream indexStream() {
+		return dataAssetManager.streamAll(RowStream.DEFAULT_CHUNK_SIZE);
+	}
+
 	public void resource(Message<Object> receivedMessage) {
 		//TODO Get REsource from Adapter
 	}
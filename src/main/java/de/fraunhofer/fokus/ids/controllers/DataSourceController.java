@@ -32,10 +32,23 @@ public class DataSourceController {
             }
             else{
                 LOGGER.error(reply2.cause());
+                resultHandler.handle(Future.failedFuture(reply2.cause()));
             }
         });
     }
 
+    public void getAdapterStats(Handler<AsyncResult<JsonObject>> resultHandler) {
+        dataSourceAdapterService.getAdapterStats(resultHandler);
+    }
+
+    public void getAdapterHealth(Handler<AsyncResult<JsonObject>> resultHandler) {
+        dataSourceAdapterService.getAdapterHealth(resultHandler);
+    }
+
+    public void getAdapterPools(Handler<AsyncResult<JsonObject>> resultHandler) {
+        dataSourceAdapterService.getAdapterPools(resultHandler);
+    }
+
     public void add(DataSource dataSource, Handler<AsyncResult<JsonObject>> resultHandler) {
         if(dataSource.getDatasourceName() == null || dataSource.getDatasourceName().isEmpty()) {
             JsonObject jO = new JsonObject();
@@ -129,8 +142,20 @@ public class DataSourceController {
         });
     }
 
+    public void findPage(String type, Long after, int limit, Handler<AsyncResult<JsonObject>> resultHandler) {
+        dataSourceManager.findPage(type, after, limit, reply -> {
+            if (reply.succeeded()) {
+                resultHandler.handle(Future.succeededFuture(reply.result()));
+            }
+            else {
+                LOGGER.error("DataSources not found.", reply.cause());
+                resultHandler.handle(Future.failedFuture(reply.cause()));
+            }
+        });
+    }
+
     public void findById(Long id, Handler<AsyncResult<JsonObject>> resultHandler) {
-        dataSourceManager.findById(id, reply -> {
+        dataSourceManager.findRowById(id, reply -> {
             if (reply.succeeded()) {
 
                 dataSourceAdapterService.getDataAssetFormSchema(reply.result().getString("datasourcetype"), reply2 -> {
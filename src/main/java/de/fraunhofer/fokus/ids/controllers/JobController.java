@@ -1,6 +1,8 @@
 package de.fraunhofer.fokus.ids.controllers;
 
+import de.fraunhofer.fokus.ids.persistence.enums.JobStatus;
 import de.fraunhofer.fokus.ids.persistence.managers.JobManager;
+import de.fraunhofer.fokus.ids.persistence.service.RowStream;
 import io.vertx.core.*;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
@@ -30,6 +32,22 @@ public class JobController extends AbstractVerticle {
 		});
     }
 
+	public void findPage(JobStatus status, Long sourceId, String sourceType, Long after, int limit, Handler<AsyncResult<JsonObject>> resultHandler) {
+		jobManager.findPage(status == null ? null : status.ordinal(), sourceId, sourceType, after, limit, reply -> {
+			if (reply.succeeded()) {
+				resultHandler.handle(Future.succeededFuture(reply.result()));
+			}
+			else {
+				LOGGER.error("Jobs could not be read.", reply.cause());
+				resultHandler.handle(Future.failedFuture(reply.cause()));
+			}
+		});
+	}
+
+	public RowStream findAllStream() {
+		return jobManager.streamAll(RowStream.DEFAULT_CHUNK_SIZE);
+	}
+
     public void deleteAll(Handler<AsyncResult<JsonObject>> resultHandler) {
 		jobManager.deleteAll(reply -> {
     		if(reply.succeeded()){
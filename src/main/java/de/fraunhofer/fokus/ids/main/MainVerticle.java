@@ -1,40 +1,64 @@
 package de.fraunhofer.fokus.ids.main;
 
+import de.fraunhofer.fokus.ids.codecs.ByteRanges;
+import de.fraunhofer.fokus.ids.codecs.Codecs;
+import de.fraunhofer.fokus.ids.codecs.CompressedBodyCache;
+import de.fraunhofer.fokus.ids.codecs.CompressedBodyCache.CompressedBody;
+import de.fraunhofer.fokus.ids.codecs.CompressedBodyCache.Segment;
+import de.fraunhofer.fokus.ids.codecs.MultipartEncoder;
 import de.fraunhofer.fokus.ids.controllers.*;
+import de.fraunhofer.fokus.ids.models.Constants;
 import de.fraunhofer.fokus.ids.models.DataAssetDescription;
-import de.fraunhofer.fokus.ids.models.ReturnObject;
+import de.fraunhofer.fokus.ids.models.Payload;
 import de.fraunhofer.fokus.ids.persistence.entities.DataSource;
+import de.fraunhofer.fokus.ids.persistence.enums.DataAssetStatus;
+import de.fraunhofer.fokus.ids.persistence.enums.JobStatus;
 import de.fraunhofer.fokus.ids.persistence.managers.AuthManager;
 import de.fraunhofer.fokus.ids.persistence.managers.BrokerManager;
 import de.fraunhofer.fokus.ids.persistence.managers.ConfigManager;
 import de.fraunhofer.fokus.ids.persistence.service.DatabaseServiceVerticle;
+import de.fraunhofer.fokus.ids.persistence.service.RowStream;
+import de.fraunhofer.fokus.ids.persistence.util.VersionStamps;
 import de.fraunhofer.fokus.ids.services.InitService;
+import de.fraunhofer.fokus.ids.services.PayloadReadStream;
+import de.fraunhofer.fokus.ids.services.PayloadStream;
+import de.fraunhofer.fokus.ids.services.ResolutionCache;
+import de.fraunhofer.fokus.ids.services.datasourceAdapter.AdapterFileClient;
+import de.fraunhofer.fokus.ids.services.datasourceAdapter.AdapterGuards;
 import de.fraunhofer.fokus.ids.services.datasourceAdapter.DataSourceAdapterServiceVerticle;
 import io.vertx.config.ConfigRetriever;
 import io.vertx.config.ConfigRetrieverOptions;
 import io.vertx.config.ConfigStoreOptions;
 import io.vertx.core.*;
 import io.vertx.core.buffer.Buffer;
-import io.vertx.core.http.HttpMethod;
-import io.vertx.core.http.HttpServer;
-import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.http.*;
 import io.vertx.core.json.Json;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
+import io.vertx.core.shareddata.LocalMap;
 import io.vertx.core.streams.Pump;
 import io.vertx.ext.web.Router;
+import io.vertx.ext.web.RoutingContext;
 import io.vertx.ext.web.handler.BodyHandler;
 import io.vertx.ext.web.handler.CorsHandler;
 import io.vertx.ext.web.handler.JWTAuthHandler;
-import org.apache.http.HttpEntity;
 import org.apache.http.entity.ContentType;
-import org.apache.http.entity.mime.MultipartEntityBuilder;
 
-import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 /**
  * @author Vincent Bohlen, vincent.bohlen@fokus.fraunhofer.de
  */
@@ -49,10 +73,18 @@ public class MainVerticle extends AbstractVerticle{
 	private BrokerController brokerController;
 	private BrokerManager brokerManager;
 	private ConfigManager configManager;
+	private VersionStamps versionStamps;
+	private CompressedBodyCache compressedBodyCache;
+	private WorkerExecutor compressionExecutor;
+	private HttpServerOptions httpServerOptions;
+	private boolean compression;
+	private int compressionLevel;
 	private int servicePort;
 
 	@Override
 	public void start(Future<Void> startFuture) {
+		Codecs.register(vertx);
+
 		this.authManager = new AuthManager(vertx);
 		this.connectorController = new ConnectorController(vertx);
 		this.dataAssetController = new DataAssetController(vertx);
@@ -61,6 +93,9 @@ public class MainVerticle extends AbstractVerticle{
 		this.brokerController = new BrokerController(vertx);
 		this.brokerManager = new BrokerManager(vertx);
 		this.configManager = new ConfigManager(vertx);
+		this.versionStamps = new VersionStamps(vertx);
+		this.compressedBodyCache = new CompressedBodyCache();
+		this.compressionExecutor = vertx.createSharedWorkerExecutor(Constants.COMPRESSION_WORKER_POOL, Constants.COMPRESSION_WORKER_POOL_SIZE);
 
 		DeploymentOptions deploymentOptions = new DeploymentOptions();
 		deploymentOptions.setWorker(true);
@@ -87,6 +122,32 @@ public class MainVerticle extends AbstractVerticle{
 					retriever.getConfig(ar -> {
 						if (ar.succeeded()) {
 							servicePort = ar.result().getInteger("SERVICE_PORT");
+							httpServerOptions = new HttpServerOptions()
+									.setHttp2ClearTextEnabled(ar.result().getBoolean("HTTP2_CLEARTEXT", true))
+									.setInitialSettings(new Http2Settings()
+											.setMaxConcurrentStreams(ar.result().getLong("HTTP2_MAX_CONCURRENT_STREAMS", 100L)))
+									.setIdleTimeout(ar.result().getInteger("HTTP_IDLE_TIMEOUT", 0))
+									.setTcpKeepAlive(ar.result().getBoolean("HTTP_TCP_KEEPALIVE", true));
+							// only the cacheable metadata responses are compressed, see replyEncoded. Compression of the whole server would
+							// also encode the /data payloads, disabling sendFile and invalidating Content-Range and Content-Length of partial responses
+							compression = ar.result().getBoolean("HTTP_COMPRESSION", true);
+							compressionLevel = ar.result().getInteger("HTTP_COMPRESSION_LEVEL", 6);
+							LocalMap<String, Integer> settings = vertx.sharedData().getLocalMap(Constants.SETTINGS);
+							settings.put(Constants.CATALOG_PAGE_SIZE, ar.result().getInteger(Constants.CATALOG_PAGE_SIZE, 0));
+							settings.put(Constants.RESOLUTION_CACHE_TTL, ar.result().getInteger(Constants.RESOLUTION_CACHE_TTL, ResolutionCache.DEFAULT_TTL));
+							settings.put(Constants.RESOLUTION_CACHE_SIZE, ar.result().getInteger(Constants.RESOLUTION_CACHE_SIZE, ResolutionCache.DEFAULT_SIZE));
+							settings.put(Constants.ADAPTER_MAX_DOWNLOADS, ar.result().getInteger(Constants.ADAPTER_MAX_DOWNLOADS, AdapterFileClient.DEFAULT_MAX_DOWNLOADS));
+							settings.put(Constants.ADAPTER_DOWNLOAD_TIMEOUT, ar.result().getInteger(Constants.ADAPTER_DOWNLOAD_TIMEOUT, AdapterFileClient.DEFAULT_DOWNLOAD_TIMEOUT));
+							settings.put(Constants.ADAPTER_INACTIVITY_TIMEOUT, ar.result().getInteger(Constants.ADAPTER_INACTIVITY_TIMEOUT, PayloadStream.DEFAULT_INACTIVITY_TIMEOUT));
+							settings.put(Constants.ADAPTER_BREAKER_THRESHOLD, ar.result().getInteger(Constants.ADAPTER_BREAKER_THRESHOLD, AdapterGuards.DEFAULT_FAILURE_THRESHOLD));
+							settings.put(Constants.ADAPTER_BREAKER_RESET, ar.result().getInteger(Constants.ADAPTER_BREAKER_RESET, AdapterGuards.DEFAULT_RESET_TIMEOUT));
+							JsonObject adapterClientSettings = new JsonObject();
+							ar.result().forEach(e -> {
+								if(e.getKey().startsWith("ADAPTER_")){
+									adapterClientSettings.put(e.getKey(), e.getValue());
+								}
+							});
+							vertx.sharedData().<String, JsonObject>getLocalMap(Constants.ADAPTER_CLIENT_SETTINGS).put(Constants.ADAPTER_CLIENT_SETTINGS, adapterClientSettings);
 							envFuture.complete();
 						} else {
 							envFuture.fail(ar.cause());
@@ -116,7 +177,7 @@ public class MainVerticle extends AbstractVerticle{
 	}
 
 	private void createHttpServer(Vertx vertx) {
-		HttpServer server = vertx.createHttpServer();
+		HttpServer server = vertx.createHttpServer(httpServerOptions);
 
 		Set<String> allowedHeaders = new HashSet<>();
 		allowedHeaders.add("x-requested-with");
@@ -126,6 +187,9 @@ public class MainVerticle extends AbstractVerticle{
 		allowedHeaders.add("Content-Type");
 		allowedHeaders.add("accept");
 		allowedHeaders.add("X-PINGARUNER");
+		allowedHeaders.add("If-None-Match");
+		allowedHeaders.add("Range");
+		allowedHeaders.add("If-Range");
 
 		Set<HttpMethod> allowedMethods = new HashSet<>();
 		allowedMethods.add(HttpMethod.GET);
@@ -134,6 +198,15 @@ public class MainVerticle extends AbstractVerticle{
 
 		router.route().handler(CorsHandler.create("*").allowedHeaders(allowedHeaders).allowedMethods(allowedMethods));
 		router.route().handler(BodyHandler.create());
+		// malformed parameters, e.g. a limit that is not a number, are errors of the client
+		router.route().failureHandler(routingContext -> {
+			if(routingContext.failure() instanceof IllegalArgumentException) {
+				badRequest(routingContext.failure().getMessage(), routingContext.response());
+			}
+			else {
+				routingContext.next();
+			}
+		});
 
 		router.post("/login").handler(routingContext ->
 				authManager.login(routingContext.getBodyAsJson(), reply -> {
@@ -150,27 +223,46 @@ public class MainVerticle extends AbstractVerticle{
 				})
 		);
 
+		router.route("/about/*").handler(routingContext -> {
+			if(!notModified(routingContext, VersionStamps.PUBLISHED, VersionStamps.CONFIGURATION) && !replyFromCache(routingContext)) {
+				routingContext.next();
+			}
+		});
+
 		router.route("/about/").handler(routingContext ->
 				connectorController.about("",result ->
-						replyWithContentType(result, routingContext.response())));
+						replyMultipart(result, routingContext)));
+
+		router.route("/about/catalog").handler(routingContext ->
+				connectorController.catalog(longParam(routingContext, "after"), result ->
+						replyMultipart(result, routingContext)));
 
 		router.route("/about/:extension").handler(routingContext ->
 				connectorController.about(routingContext.request().getParam("extension"), result ->
-						replyWithContentType(result, routingContext.response())));
+						replyMultipart(result, routingContext)));
 
 		router.route("/data/:id.:extension").handler(routingContext ->
-				connectorController.data(Long.parseLong(routingContext.request().getParam("id")), routingContext.request().getParam("extension"), result ->
-						replyFile(result, routingContext.response())));
+				connectorController.data(Long.parseLong(routingContext.request().getParam("id")), routingContext.request().getParam("extension"),
+						routingContext.request().getHeader("Range"), routingContext.request().getHeader("If-Range"), result ->
+						replyPayload(result, routingContext)));
 
 		router.route("/data/:id").handler(routingContext ->
-				connectorController.data(Long.parseLong(routingContext.request().getParam("id")), "", result ->
-						replyFile(result, routingContext.response())));
+				connectorController.data(Long.parseLong(routingContext.request().getParam("id")), "",
+						routingContext.request().getHeader("Range"), routingContext.request().getHeader("If-Range"), result ->
+						replyPayload(result, routingContext)));
 
 
 		router.route("/api/*").handler(JWTAuthHandler.create(authManager.getProvider()));
 
-		router.route("/api/jobs/find/all").handler(routingContext ->
-				jobController.findAll(result -> reply(result, routingContext.response())));
+		router.route("/api/jobs/find/all").handler(routingContext -> {
+			if(isPaged(routingContext)) {
+				jobController.findPage(enumParam(routingContext, "status", JobStatus.class), longParam(routingContext, "source"), routingContext.request().getParam("type"),
+						longParam(routingContext, "after"), intParam(routingContext, "limit"), result -> reply(result, routingContext.response()));
+			}
+			else {
+				replyStream(jobController.findAllStream(), routingContext.response());
+			}
+		});
 
 		router.route("/api/jobs/delete/all").handler(routingContext ->
 				jobController.deleteAll(result -> reply(result, routingContext.response())));
@@ -185,8 +277,18 @@ public class MainVerticle extends AbstractVerticle{
 		router.route("/api/dataassets/:id/delete").handler(routingContext ->
 				dataAssetController.delete(Long.parseLong(routingContext.request().getParam("id")), result -> reply(result, routingContext.response())));
 
-		router.route("/api/dataassets/").handler(routingContext ->
-				dataAssetController.index(result -> reply(result, routingContext.response())));
+		router.route("/api/dataassets/").handler(routingContext -> {
+			if(notModified(routingContext, VersionStamps.DATA_ASSETS)) {
+				return;
+			}
+			if(isPaged(routingContext)) {
+				dataAssetController.page(enumParam(routingContext, "status", DataAssetStatus.class), routingContext.request().getParam("source"),
+						longParam(routingContext, "after"), intParam(routingContext, "limit"), result -> reply(result, routingContext.response()));
+			}
+			else {
+				replyStream(dataAssetController.indexStream(), routingContext.response());
+			}
+		});
 
 
 		router.route("/api/dataassets/counts/").handler(routingContext ->
@@ -209,8 +311,18 @@ public class MainVerticle extends AbstractVerticle{
 		router.route("/api/datasources/delete/:id").handler(routingContext ->
 				dataSourceController.delete(Long.parseLong(routingContext.request().getParam("id")), result -> reply(result, routingContext.response())));
 
-		router.route("/api/datasources/findAll").handler(routingContext ->
-				dataSourceController.findAllByType(result -> reply(result, routingContext.response())));
+		router.route("/api/datasources/findAll").handler(routingContext -> {
+			if(notModified(routingContext, VersionStamps.DATA_SOURCES)) {
+				return;
+			}
+			if(isPaged(routingContext)) {
+				dataSourceController.findPage(routingContext.request().getParam("type"), longParam(routingContext, "after"), intParam(routingContext, "limit"),
+						result -> reply(result, routingContext.response()));
+			}
+			else {
+				dataSourceController.findAllByType(result -> reply(result, routingContext.response()));
+			}
+		});
 
 		router.route("/api/datasources/find/id/:id").handler(routingContext ->
 				dataSourceController.findById(Long.parseLong(routingContext.request().getParam("id")), result -> reply(result, routingContext.response())));
@@ -222,10 +334,34 @@ public class MainVerticle extends AbstractVerticle{
 				dataSourceController.update(toDataSource(routingContext.getBodyAsJson()),Long.parseLong(routingContext.request().getParam("id")), result -> reply(result, routingContext.response())));
 
 		router.route("/api/datasources/schema/type/:type").handler(routingContext ->
-				dataSourceController.getFormSchema(routingContext.request().getParam("type"), result -> reply(result, routingContext.response())));
+				dataSourceController.getFormSchema(routingContext.request().getParam("type"), result -> replyCacheable(result, routingContext)));
 
-		router.route("/api/datasources/schema/type/:type").handler(routingContext ->
-				dataSourceController.getFormSchema(routingContext.request().getParam("type"), result -> reply(result, routingContext.response())));
+		router.route("/api/datasources/adapters/stats").handler(routingContext ->
+				dataSourceController.getAdapterStats(result -> reply(result, routingContext.response())));
+
+		router.route("/api/datasources/adapters/pools").handler(routingContext ->
+				dataSourceController.getAdapterPools(result -> {
+					if(result.succeeded()){
+						reply(new JsonObject()
+								.put("operations", result.result())
+								.put("downloads", connectorController.getDownloadPools()), routingContext.response());
+					}
+					else{
+						reply(result, routingContext.response());
+					}
+				}));
+
+		router.route("/api/datasources/adapters/health").handler(routingContext ->
+				dataSourceController.getAdapterHealth(result -> {
+					if(result.succeeded()){
+						reply(new JsonObject()
+								.put("operations", result.result())
+								.put("downloads", connectorController.getDownloadHealth()), routingContext.response());
+					}
+					else{
+						reply(result, routingContext.response());
+					}
+				}));
 
 		router.post("/api/broker/add/").handler(routingContext ->
 				brokerController.add(routingContext.getBodyAsJson().getString("url"), result -> reply(result, routingContext.response())));
@@ -236,8 +372,18 @@ public class MainVerticle extends AbstractVerticle{
 		router.route("/api/broker/register/:id").handler(routingContext ->
 				brokerController.register(Long.parseLong(routingContext.request().getParam("id")), result -> reply(result, routingContext.response())));
 
-		router.route("/api/broker/findAll").handler(routingContext ->
-				brokerManager.findAll(result -> reply(result, routingContext.response())));
+		router.route("/api/broker/findAll").handler(routingContext -> {
+			if(notModified(routingContext, VersionStamps.BROKERS)) {
+				return;
+			}
+			if(isPaged(routingContext)) {
+				brokerManager.findPage(routingContext.request().getParam("status"), longParam(routingContext, "after"), intParam(routingContext, "limit"),
+						result -> reply(result, routingContext.response()));
+			}
+			else {
+				brokerManager.findAll(result -> reply(result, routingContext.response()));
+			}
+		});
 
 		router.route("/api/broker/delete/:id").handler(routingContext ->
 				brokerController.delete(Long.parseLong(routingContext.request().getParam("id")), result -> reply(result, routingContext.response())));
@@ -252,6 +398,50 @@ public class MainVerticle extends AbstractVerticle{
 		LOGGER.info("odc-manager deployed on port "+servicePort);
 	}
 
+	/**
+	 * Listing routes return the complete listing unless a limit or a cursor is requested.
+	 */
+	private boolean isPaged(RoutingContext routingContext) {
+		return routingContext.request().getParam("limit") != null || routingContext.request().getParam("after") != null;
+	}
+
+	/**
+	 * @throws IllegalArgumentException if the parameter is not a number, answered with 400 by the failure handler
+	 */
+	private Long longParam(RoutingContext routingContext, String name) {
+		String value = routingContext.request().getParam(name);
+		try {
+			return value == null ? null : Long.parseLong(value);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Parameter " + name + " must be a number.", e);
+		}
+	}
+
+	/**
+	 * @throws IllegalArgumentException if the parameter is not a number, answered with 400 by the failure handler
+	 */
+	private int intParam(RoutingContext routingContext, String name) {
+		String value = routingContext.request().getParam(name);
+		try {
+			return value == null ? 0 : Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Parameter " + name + " must be a number.", e);
+		}
+	}
+
+	/**
+	 * @return the constant named by the parameter, case insensitive, or null if the parameter is missing
+	 * @throws IllegalArgumentException if the parameter names no constant, answered with 400 by the failure handler
+	 */
+	private <E extends Enum<E>> E enumParam(RoutingContext routingContext, String name, Class<E> type) {
+		String value = routingContext.request().getParam(name);
+		try {
+			return value == null ? null : Enum.valueOf(type, value.toUpperCase());
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Parameter " + name + " must be one of " + Arrays.toString(type.getEnumConstants()) + ".", e);
+		}
+	}
+
 	//TODO: WORKAROUND. Find way to use Json.deserialize()
 	private DataSource toDataSource(JsonObject bodyAsJson) {
 		DataSource ds = new DataSource();
@@ -267,7 +457,7 @@ public class MainVerticle extends AbstractVerticle{
 			response.putHeader("content-type", ContentType.APPLICATION_JSON.toString());
 			response.end(entity);
 		} else {
-			response.setStatusCode(404).end();
+			notFound(response);
 		}
 	}
 	private void reply(AsyncResult result, HttpServerResponse response){
@@ -276,39 +466,283 @@ public class MainVerticle extends AbstractVerticle{
 		}
 		else{
 			LOGGER.error("Result Future failed.",result.cause());
-			response.setStatusCode(404).end();
+			notFound(response);
 		}
 	}
 
-	private void replyFile(AsyncResult<File> result, HttpServerResponse response){
+	/**
+	 * Sets ETag and Last-Modified of the response from the versions of the families it is built from.
+	 * The versions are read before any query, so a write during the request only leads to another full response.
+	 * @return true if If-None-Match matched and 304 was sent, without querying or serializing anything
+	 */
+	private boolean notModified(RoutingContext routingContext, String... families) {
+		StringBuilder etag = new StringBuilder("W/\"").append(versionStamps.epoch());
+		long lastModified = 0;
+		for(String family : families) {
+			etag.append('-').append(versionStamps.get(family));
+			lastModified = Math.max(lastModified, versionStamps.lastModified(family));
+		}
+		etag.append('"');
+
+		HttpServerResponse response = routingContext.response();
+		response.putHeader("ETag", etag.toString());
+		response.putHeader("Last-Modified", DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant.ofEpochMilli(lastModified).atZone(ZoneOffset.UTC)));
+		response.putHeader("Cache-Control", "no-cache");
+
+		String ifNoneMatch = routingContext.request().getHeader("If-None-Match");
+		if(ifNoneMatch != null) {
+			// weak comparison, the header part of the IDS responses differs in the issue date
+			String opaque = etag.substring(2);
+			for(String tag : ifNoneMatch.split(",")) {
+				tag = tag.trim();
+				if(tag.equals("*") || (tag.startsWith("W/") ? tag.substring(2) : tag).equals(opaque)) {
+					response.setStatusCode(304).end();
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private void badRequest(String message, HttpServerResponse response) {
+		response.headers().remove("ETag");
+		response.headers().remove("Last-Modified");
+		response.setStatusCode(400).end(message == null ? "" : message);
+	}
+
+	private void notFound(HttpServerResponse response) {
+		// an error response must not be revalidated as the current representation
+		response.headers().remove("ETag");
+		response.headers().remove("Last-Modified");
+		response.setStatusCode(404).end();
+	}
+
+	private void replyStream(RowStream stream, HttpServerResponse response){
+		AtomicBoolean started = new AtomicBoolean(false);
+		response.putHeader("content-type", ContentType.APPLICATION_JSON.toString());
+		response.setChunked(true);
+		response.closeHandler(v -> stream.close());
+		stream.exceptionHandler(t -> {
+			LOGGER.error("Result stream failed.", t);
+			if(started.get()){
+				response.close();
+			}
+			else {
+				notFound(response);
+			}
+		});
+		stream.endHandler(v -> response.end(started.get() ? "]" : "[]"));
+		stream.handler(chunk -> {
+			Buffer buffer = Buffer.buffer();
+			for(int i = 0; i < chunk.size(); i++){
+				buffer.appendString(started.getAndSet(true) ? "," : "[");
+				buffer.appendString(chunk.getJsonObject(i).encode());
+			}
+			response.write(buffer);
+			if(response.writeQueueFull()){
+				stream.pause();
+				response.drainHandler(d -> stream.resume());
+			}
+		});
+	}
+
+	private void replyMultipart(AsyncResult<MultipartEncoder> result, RoutingContext routingContext){
+		if (result.succeeded()) {
+			MultipartEncoder message = result.result();
+			MultiMap headers = MultiMap.caseInsensitiveMultiMap()
+					.addAll(message.getHeaders())
+					.add("content-type", message.getContentType());
+			// the header part carries the issue date of the response, so it is encoded for every request and only the rest is cached
+			replyEncoded(routingContext, routingContext.response().headers().get("ETag"), headers, message.head(1), message.tail(1));
+		}
+		else {
+			LOGGER.error("Result Future failed.",result.cause());
+			notFound(routingContext.response());
+		}
+	}
+
+	private void replyCacheable(AsyncResult<JsonObject> result, RoutingContext routingContext){
+		if (result.succeeded() && result.result() != null) {
+			String entity = result.result().toString();
+			MultiMap headers = MultiMap.caseInsensitiveMultiMap()
+					.add("content-type", ContentType.APPLICATION_JSON.toString());
+			// without a version stamp the digest of the body is the version
+			replyEncoded(routingContext, digest(entity), headers, Collections.emptyList(), Collections.singletonList(Buffer.buffer(entity)));
+		}
+		else {
+			reply(result, routingContext.response());
+		}
+	}
+
+	/**
+	 * Sends a cacheable body gzip or deflate encoded if the client accepts it.
+	 * The deflated body is kept per request uri and version, so it is compressed again only after the version changed.
+	 * @param head the chunks in front of the body that must not be cached, encoded for every request
+	 */
+	private void replyEncoded(RoutingContext routingContext, String version, MultiMap headers, List<Buffer> head, List<Buffer> body){
+		HttpServerResponse response = routingContext.response();
+		String uri = routingContext.request().uri();
+		String encoding = contentEncoding(routingContext);
+		if(encoding.equals(CompressedBodyCache.IDENTITY)) {
+			List<Buffer> message = new ArrayList<>(head);
+			message.addAll(body);
+			replyIdentity(response, headers, message);
+			return;
+		}
+		CompressedBody cached = compressedBodyCache.get(uri, version);
+		if(cached != null) {
+			replyCompressed(response, encoding, cached.getHeaders(), CompressedBodyCache.encode(encoding, head, cached.getBody(), compressionLevel));
+		}
+		else {
+			compressionExecutor.<Segment>executeBlocking(future -> future.complete(CompressedBodyCache.deflate(body, compressionLevel)), false, deflated -> {
+				if(deflated.succeeded()) {
+					compressedBodyCache.put(uri, version, headers, deflated.result());
+					replyCompressed(response, encoding, headers, CompressedBodyCache.encode(encoding, head, deflated.result(), compressionLevel));
+				}
+				else {
+					LOGGER.error("Response could not be compressed.", deflated.cause());
+					List<Buffer> message = new ArrayList<>(head);
+					message.addAll(body);
+					replyIdentity(response, headers, message);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Answers /about requests from the cached body of the current version, only the header part is created for the request.
+	 * @return true if the body of the current version was cached and the request is being answered
+	 */
+	private boolean replyFromCache(RoutingContext routingContext){
+		String encoding = contentEncoding(routingContext);
+		if(encoding.equals(CompressedBodyCache.IDENTITY)) {
+			return false;
+		}
+		CompressedBody cached = compressedBodyCache.get(routingContext.request().uri(), routingContext.response().headers().get("ETag"));
+		if(cached == null) {
+			return false;
+		}
+		connectorController.header(result -> {
+			if(result.succeeded()) {
+				replyCompressed(routingContext.response(), encoding, cached.getHeaders(),
+						CompressedBodyCache.encode(encoding, result.result().head(1), cached.getBody(), compressionLevel));
+			}
+			else {
+				notFound(routingContext.response());
+			}
+		});
+		return true;
+	}
+
+	/**
+	 * @return the SHA-256 of the body, Base64 encoded
+	 */
+	private String digest(String body){
+		try {
+			return Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-256").digest(body.getBytes(StandardCharsets.UTF_8)));
+		} catch (NoSuchAlgorithmException e) {
+			// every Java platform implements SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private String contentEncoding(RoutingContext routingContext){
+		routingContext.response().putHeader("Vary", "Accept-Encoding");
+		if(!compression) {
+			return CompressedBodyCache.IDENTITY;
+		}
+		return CompressedBodyCache.negotiate(routingContext.request().getHeader("Accept-Encoding"));
+	}
+
+	private void replyCompressed(HttpServerResponse response, String encoding, MultiMap headers, Buffer body){
+		response.headers().addAll(headers);
+		response.putHeader("content-encoding", encoding);
+		response.putHeader("content-length", String.valueOf(body.length()));
+		response.end(body);
+	}
+
+	private void replyIdentity(HttpServerResponse response, MultiMap headers, List<Buffer> body){
+		response.headers().addAll(headers);
+		response.putHeader("content-length", String.valueOf(body.stream().mapToInt(Buffer::length).sum()));
+		MultipartEncoder.write(response, body.iterator());
+	}
+
+	/**
+	 * Sends a cached payload with sendFile, or pipes the paused stream of the adapter response or of the spool file to the client with backpressure.
+	 * The stream is cancelled if the client goes away before the body was read.
+	 */
+	private void replyPayload(AsyncResult<Payload> result, RoutingContext routingContext){
+		HttpServerResponse response = routingContext.response();
 		if(result.succeeded()){
-			if(result.result() != null) {
-				response.sendFile(result.result().toString());
-				new File(result.result().toString()).delete();
+			Payload payload = result.result();
+			response.putHeader("Accept-Ranges", ByteRanges.BYTES);
+			if(payload.getETag() != null) {
+				response.putHeader("ETag", payload.getETag());
+			}
+			if(payload.getFile() != null) {
+				sendPayloadFile(payload, routingContext.request(), response);
+				return;
+			}
+			PayloadReadStream stream = payload.getStream();
+			if(response.closed()) {
+				stream.cancel();
+				return;
+			}
+			response.closeHandler(v -> stream.cancel());
+			response.setStatusCode(payload.getStatusCode());
+			response.headers().addAll(payload.getHeaders());
+			if(payload.getHeaders().get("content-length") == null) {
+				response.setChunked(true);
 			}
+			stream.exceptionHandler(t -> {
+				LOGGER.error("Adapter response failed.", t);
+				response.close();
+			});
+			stream.endHandler(v -> response.end());
+			Pump.pump(stream, response).start();
+			stream.resume();
 		}
 		else{
 			LOGGER.error("Result Future failed.",result.cause());
-			response.setStatusCode(404).end();
+			notFound(response);
 		}
 	}
 
-		private void replyWithContentType(AsyncResult<ReturnObject> result, HttpServerResponse response){
-		if (result.succeeded()) {
-			if(result.result() != null) {
-				ReturnObject returnObject = result.result();
-				String entity = returnObject.getEntity();
-				response.putHeader("content-type", returnObject.getType());
-				response.end(entity);
-			}
-			else{
-				LOGGER.error("Resultbody was empty.");
-				response.setStatusCode(404).end();
+	/**
+	 * Sends the cached file, or the requested ranges of it if Range is present and If-Range matches.
+	 */
+	private void sendPayloadFile(Payload payload, HttpServerRequest request, HttpServerResponse response){
+		String lastModified = DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant.ofEpochMilli(payload.getLastModified()).atZone(ZoneOffset.UTC));
+		response.putHeader("Last-Modified", lastModified);
+		response.headers().addAll(payload.getHeaders());
+		long length = Long.parseLong(payload.getHeaders().get("content-length"));
+		List<long[]> ranges = ByteRanges.ifRange(request.getHeader("If-Range"), payload.getETag(), lastModified)
+				? ByteRanges.parse(request.getHeader("Range"), length)
+				: null;
+		Handler<AsyncResult<Void>> sent = ar -> {
+			if(ar.failed()) {
+				LOGGER.error("Cached payload could not be sent.", ar.cause());
+				response.close();
 			}
+		};
+		if(ranges == null) {
+			response.sendFile(payload.getFile(), sent);
+		}
+		else if(ranges.isEmpty()) {
+			response.headers().remove("content-type");
+			response.putHeader("content-length", "0");
+			response.putHeader("Content-Range", ByteRanges.BYTES + " */" + length);
+			response.setStatusCode(416).end();
+		}
+		else if(ranges.size() == 1) {
+			long[] range = ranges.get(0);
+			response.putHeader("Content-Range", ByteRanges.contentRange(range, length));
+			response.putHeader("content-length", String.valueOf(range[1] - range[0] + 1));
+			response.setStatusCode(206);
+			response.sendFile(payload.getFile(), range[0], range[1] - range[0] + 1, sent);
 		}
 		else {
-			LOGGER.error("Result Future failed.",result.cause());
-			response.setStatusCode(404).end();
+			ByteRanges.sendMultipart(vertx, payload.getFile(), ranges, length, payload.getHeaders().get("content-type"), response);
 		}
 	}
 
@@ -0,0 +1,38 @@
+package de.fraunhofer.fokus.ids.models;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import de.fraunhofer.fokus.ids.persistence.util.BrokerStatus;
+/**
+ * @author Vincent Bohlen, vincent.bohlen@fokus.fraunhofer.de
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class Broker {
+
+    private Long id;
+    private String url;
+    private BrokerStatus status;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    public BrokerStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(BrokerStatus status) {
+        this.status = status;
+    }
+}
@@ -9,5 +9,27 @@ public class Constants {
     public static final String DATABASE_SERVICE = ROUTE_PREFIX+"databaseService";
     public static final String DATASOURCEADAPTER_SERVICE = ROUTE_PREFIX+"dataSourceAdapterService";
 
+    public static final String CONFIGURATION_CACHE = ROUTE_PREFIX+"configurationCache";
+    public static final String VERSION_STAMPS = ROUTE_PREFIX+"versionStamps";
+    public static final String DATA_ASSET_COUNTS = ROUTE_PREFIX+"dataAssetCounts";
+
+    public static final String CATALOG_WORKER_POOL = ROUTE_PREFIX+"catalogWorker";
+    public static final int CATALOG_WORKER_POOL_SIZE = 4;
+    public static final String COMPRESSION_WORKER_POOL = ROUTE_PREFIX+"compressionWorker";
+    public static final int COMPRESSION_WORKER_POOL_SIZE = 2;
+
+    // settings read from the environment at startup
+    public static final String SETTINGS = ROUTE_PREFIX+"settings";
+    public static final String CATALOG_PAGE_SIZE = "CATALOG_PAGE_SIZE";
+    public static final String RESOLUTION_CACHE_TTL = "RESOLUTION_CACHE_TTL";
+    public static final String RESOLUTION_CACHE_SIZE = "RESOLUTION_CACHE_SIZE";
+    public static final String ADAPTER_MAX_DOWNLOADS = "ADAPTER_MAX_DOWNLOADS";
+    public static final String ADAPTER_DOWNLOAD_TIMEOUT = "ADAPTER_DOWNLOAD_TIMEOUT";
+    public static final String ADAPTER_INACTIVITY_TIMEOUT = "ADAPTER_INACTIVITY_TIMEOUT";
+    public static final String ADAPTER_BREAKER_THRESHOLD = "ADAPTER_BREAKER_THRESHOLD";
+    public static final String ADAPTER_BREAKER_RESET = "ADAPTER_BREAKER_RESET";
+    // the ADAPTER_ variables of the environment for the client pools, see AdapterClients.options
+    public static final String ADAPTER_CLIENT_SETTINGS = ROUTE_PREFIX+"adapterClientSettings";
+
 
 }
@@ -0,0 +1,86 @@
+package de.fraunhofer.fokus.ids.models;
+
+import de.fraunhofer.fokus.ids.services.PayloadReadStream;
+import io.vertx.core.MultiMap;
+
+/**
+ * The payload of a data asset, either a file of the payload cache or the body of the adapter response.
+ * @author Vincent Bohlen, vincent.bohlen@fokus.fraunhofer.de
+ */
+public class Payload {
+
+    private MultiMap headers = MultiMap.caseInsensitiveMultiMap();
+    private String file;
+    private PayloadReadStream stream;
+    private int statusCode = 200;
+    private String etag;
+    private long lastModified;
+
+    public static Payload fromFile(String file, MultiMap headers) {
+        Payload payload = new Payload();
+        payload.file = file;
+        payload.headers.addAll(headers);
+        return payload;
+    }
+
+    public static Payload fromStream(PayloadReadStream stream, MultiMap headers) {
+        Payload payload = new Payload();
+        payload.stream = stream;
+        payload.headers.addAll(headers);
+        return payload;
+    }
+
+    /**
+     * @return the content-type, content-length and content-disposition headers of the payload, and content-range of a partial response
+     */
+    public MultiMap getHeaders() {
+        return headers;
+    }
+
+    /**
+     * @return the path of the cached file, or null if the payload is streamed
+     */
+    public String getFile() {
+        return file;
+    }
+
+    /**
+     * @return the paused stream of the payload, or null if the payload is cached
+     */
+    public PayloadReadStream getStream() {
+        return stream;
+    }
+
+    /**
+     * @return 200, or 206 if the stream is a partial response of the adapter
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public void setStatusCode(int statusCode) {
+        this.statusCode = statusCode;
+    }
+
+    /**
+     * @return the strong ETag of the payload, derived from data asset id, FileType and data asset version
+     */
+    public String getETag() {
+        return etag;
+    }
+
+    public void setETag(String etag) {
+        this.etag = etag;
+    }
+
+    /**
+     * @return the time the cached file was written, or 0 if the payload is streamed
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public void setLastModified(long lastModified) {
+        this.lastModified = lastModified;
+    }
+}
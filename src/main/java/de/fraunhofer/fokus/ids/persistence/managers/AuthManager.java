@@ -3,8 +3,8 @@ package de.fraunhofer.fokus.ids.persistence.managers;
 import de.fraunhofer.fokus.ids.models.Constants;
 import de.fraunhofer.fokus.ids.persistence.entities.User;
 import de.fraunhofer.fokus.ids.persistence.service.DatabaseService;
+import de.fraunhofer.fokus.ids.persistence.util.RowMapper;
 import io.vertx.core.*;
-import io.vertx.core.json.Json;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.logging.Logger;
@@ -50,7 +50,7 @@ public class AuthManager {
                 resultHandler.handle(Future.failedFuture(reply.cause().toString()));
             } else {
                 if (reply.result().size() > 0) {
-                    User user = Json.decodeValue(reply.result().get(0).toString(), User.class);
+                    User user = RowMapper.USER.map(reply.result().get(0));
 
                     if (BCrypt.checkpw(credentials.getString("password"), user.getPassword())) {
                         resultHandler.handle(Future.succeededFuture(provider.generateToken(new JsonObject().put("sub", user.getUsername()), new JWTOptions().setExpiresInMinutes(60))));
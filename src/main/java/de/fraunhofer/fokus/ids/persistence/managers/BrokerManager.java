@@ -1,8 +1,12 @@
 package de.fraunhofer.fokus.ids.persistence.managers;
 
+import de.fraunhofer.fokus.ids.models.Broker;
 import de.fraunhofer.fokus.ids.models.Constants;
 import de.fraunhofer.fokus.ids.persistence.service.DatabaseService;
 import de.fraunhofer.fokus.ids.persistence.util.BrokerStatus;
+import de.fraunhofer.fokus.ids.persistence.util.PageQuery;
+import de.fraunhofer.fokus.ids.persistence.util.RowMapper;
+import de.fraunhofer.fokus.ids.persistence.util.VersionStamps;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
@@ -14,6 +18,7 @@ import io.vertx.core.logging.LoggerFactory;
 
 import java.time.Instant;
 import java.util.Date;
+import java.util.List;
 
 /**
  * @author Vincent Bohlen, vincent.bohlen@fokus.fraunhofer.de
@@ -22,6 +27,7 @@ public class BrokerManager {
 
     private Logger LOGGER = LoggerFactory.getLogger(DataAssetManager.class.getName());
     private DatabaseService dbService;
+    private VersionStamps versionStamps;
 
     private static final String UPDATE_QUERY = "INSERT INTO Broker (created_at, updated_at, url, status) values (NOW(), NOW(), ?, ?)";
     private static final String UNREGISTER_QUERY =  "Update Broker SET updated_at = NOW(), status = ?  WHERE id = ?";
@@ -34,6 +40,7 @@ public class BrokerManager {
 
     public BrokerManager(Vertx vertx) {
         dbService = DatabaseService.createProxy(vertx, Constants.DATABASE_SERVICE);
+        versionStamps = new VersionStamps(vertx);
     }
 
     public void add(String url, Handler<AsyncResult<Void>> resultHandler){
@@ -46,6 +53,7 @@ public class BrokerManager {
                 LOGGER.error(reply.cause());
                 resultHandler.handle(Future.failedFuture(reply.cause().toString()));
             } else {
+                versionStamps.bump(VersionStamps.BROKERS);
                 resultHandler.handle(Future.succeededFuture());
             }
         });
@@ -69,6 +77,7 @@ public class BrokerManager {
                 LOGGER.error(reply.cause());
                 resultHandler.handle(Future.failedFuture(reply.cause()));
             } else {
+                versionStamps.bump(VersionStamps.BROKERS);
                 resultHandler.handle(Future.succeededFuture());
             }
         });
@@ -88,6 +97,7 @@ public class BrokerManager {
                 LOGGER.error(reply.cause());
                 resultHandler.handle(Future.failedFuture(reply.cause()));
             } else {
+                versionStamps.bump(VersionStamps.BROKERS);
                 resultHandler.handle(Future.succeededFuture());
             }
         });
@@ -103,6 +113,7 @@ public class BrokerManager {
                 LOGGER.error(reply.cause());
                 resultHandler.handle(Future.failedFuture(reply.cause()));
             } else {
+                versionStamps.bump(VersionStamps.BROKERS);
                 resultHandler.handle(Future.succeededFuture());
             }
         });
@@ -119,13 +130,42 @@ public class BrokerManager {
         });
     }
 
-    public void findById(long id, Handler<AsyncResult<JsonObject>> resultHandler){
+    public void findAllBrokers(Handler<AsyncResult<List<Broker>>> resultHandler){
+        dbService.query(FINDALL_QUERY, new JsonArray(), reply -> {
+            if (reply.failed()) {
+                LOGGER.error(reply.cause());
+                resultHandler.handle(Future.failedFuture(reply.cause()));
+            } else {
+                resultHandler.handle(Future.succeededFuture(RowMapper.BROKER.mapAll(reply.result())));
+            }
+        });
+    }
+
+    public void findPage(String status, Long after, int limit, Handler<AsyncResult<JsonObject>> resultHandler){
+        PageQuery pageQuery = new PageQuery("broker")
+                .filter("status", status)
+                .after(after)
+                .limit(limit);
+
+        dbService.transaction(pageQuery.statements(), reply -> {
+            if (reply.failed()) {
+                LOGGER.error(reply.cause());
+                resultHandler.handle(Future.failedFuture(reply.cause()));
+            } else {
+                resultHandler.handle(Future.succeededFuture(pageQuery.toPage(reply.result())));
+            }
+        });
+    }
+
+    public void findById(long id, Handler<AsyncResult<Broker>> resultHandler){
         dbService.query(FINDBYID_QUERY, new JsonArray().add(id), reply -> {
             if (reply.failed()) {
                 LOGGER.error(reply.cause());
                 resultHandler.handle(Future.failedFuture(reply.cause()));
+            } else if (reply.result().isEmpty()) {
+                resultHandler.handle(Future.failedFuture("Broker " + id + " not found."));
             } else {
-                resultHandler.handle(Future.succeededFuture(reply.result().get(0)));
+                resultHandler.handle(Future.succeededFuture(RowMapper.BROKER.map(reply.result().get(0))));
             }
         });
     }
@@ -2,6 +2,8 @@ package de.fraunhofer.fokus.ids.persistence.managers;
 
 import de.fraunhofer.fokus.ids.models.Constants;
 import de.fraunhofer.fokus.ids.persistence.service.DatabaseService;
+import de.fraunhofer.fokus.ids.persistence.util.Statements;
+import de.fraunhofer.fokus.ids.persistence.util.VersionStamps;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
@@ -10,20 +12,50 @@ import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
+import io.vertx.core.shareddata.LocalMap;
+
+import java.util.Arrays;
 
 public class ConfigManager {
     private Logger LOGGER = LoggerFactory.getLogger(ConfigManager.class.getName());
 
     private DatabaseService dbService;
+    private LocalMap<String, JsonObject> cache;
+    private VersionStamps versionStamps;
+
+    private static final String CONFIGURATION_KEY = "configuration";
+    private static final String FIND_QUERY = "SELECT * FROM configuration ORDER BY id LIMIT 1";
+    private static final String UPDATE_QUERY = "UPDATE configuration SET title = ?, maintainer = ?, curator = ?, url = ? WHERE id = (SELECT MIN(id) FROM configuration)";
+    private static final String INSERT_QUERY = "INSERT INTO configuration (title, maintainer, curator, url) SELECT ?, ?, ?, ? WHERE NOT EXISTS (SELECT 1 FROM configuration)";
 
     public ConfigManager(Vertx vertx){
         this.dbService = DatabaseService.createProxy(vertx, Constants.DATABASE_SERVICE);
+        this.cache = vertx.sharedData().getLocalMap(Constants.CONFIGURATION_CACHE);
+        this.versionStamps = new VersionStamps(vertx);
     }
 
+    /**
+     * Returns the configuration from the cache shared by all ConfigManager instances of this Vert.x instance.
+     * The database is only queried if the configuration was not loaded yet.
+     */
     public void getConfiguration(Handler<AsyncResult<JsonObject>> resultHandler){
-        dbService.query("SELECT * FROM configuration", new JsonArray(), reply -> {
+        JsonObject configuration = cache.get(CONFIGURATION_KEY);
+        if(configuration != null){
+            resultHandler.handle(Future.succeededFuture(configuration));
+        }
+        else{
+            loadConfiguration(resultHandler);
+        }
+    }
+
+    /**
+     * Reads the configuration from the database and replaces the cached configuration.
+     */
+    public void loadConfiguration(Handler<AsyncResult<JsonObject>> resultHandler){
+        dbService.query(FIND_QUERY, new JsonArray(), reply -> {
             if(reply.succeeded()){
                 if(reply.result().size()>0) {
+                    cache.put(CONFIGURATION_KEY, reply.result().get(0));
                     resultHandler.handle(Future.succeededFuture(reply.result().get(0)));
                 }
                 else{
@@ -45,34 +77,21 @@ public class ConfigManager {
                 .add(json.getString("curator"))
                 .add(json.getString("url"));
 
-        getConfiguration(reply -> {
+        dbService.transaction(Arrays.asList(
+                Statements.update(UPDATE_QUERY, params),
+                Statements.update(INSERT_QUERY, params),
+                Statements.query(FIND_QUERY, new JsonArray())), reply -> {
             if(reply.succeeded()){
-                params.add(reply.result().getLong("id"));
-                dbService.query("UPDATE configuration SET title = ?, maintainer = ?, curator = ?, url = ? WHERE id = ?", params, reply2 -> {
-                    if(reply2.succeeded()){
-                        JsonObject jO = new JsonObject();
-                        jO.put("status", "success");
-                        jO.put("text", "Konfiguration geändert");
-                        resultHandler.handle(Future.succeededFuture(jO));
-                    }
-                    else{
-                        LOGGER.error(reply2.cause());
-                        resultHandler.handle(Future.failedFuture(reply.cause()));
-                    }
-                });
-            } else{
-                dbService.query("INSERT INTO configuration (title, maintainer, curator, url) values (?,?,?,?)", params, reply2 -> {
-                    if(reply2.succeeded()){
-                        JsonObject jO = new JsonObject();
-                        jO.put("status", "success");
-                        jO.put("text", "Konfiguration geändert");
-                        resultHandler.handle(Future.succeededFuture(jO));
-                    }
-                    else{
-                        LOGGER.error(reply2.cause());
-                        resultHandler.handle(Future.failedFuture(reply2.cause()));
-                    }
-                });
+                cache.put(CONFIGURATION_KEY, reply.result().get(2).getJsonObject(0));
+                versionStamps.bump(VersionStamps.CONFIGURATION);
+                JsonObject jO = new JsonObject();
+                jO.put("status", "success");
+                jO.put("text", "Konfiguration geändert");
+                resultHandler.handle(Future.succeededFuture(jO));
+            }
+            else{
+                LOGGER.error(reply.cause());
+                resultHandler.handle(Future.failedFuture(reply.cause()));
             }
         });
     }
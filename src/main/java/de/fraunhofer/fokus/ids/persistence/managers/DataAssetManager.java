@@ -4,8 +4,14 @@ import de.fraunhofer.fokus.ids.models.Constants;
 import de.fraunhofer.fokus.ids.persistence.entities.DataAsset;
 import de.fraunhofer.fokus.ids.persistence.enums.DataAssetStatus;
 import de.fraunhofer.fokus.ids.persistence.service.DatabaseService;
+import de.fraunhofer.fokus.ids.persistence.service.RowStream;
+import de.fraunhofer.fokus.ids.persistence.util.DataAssetCounters;
+import de.fraunhofer.fokus.ids.persistence.util.Page;
+import de.fraunhofer.fokus.ids.persistence.util.PageQuery;
+import de.fraunhofer.fokus.ids.persistence.util.RowMapper;
+import de.fraunhofer.fokus.ids.persistence.util.Statements;
+import de.fraunhofer.fokus.ids.persistence.util.VersionStamps;
 import io.vertx.core.*;
-import io.vertx.core.json.Json;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.logging.Logger;
@@ -13,7 +19,7 @@ import io.vertx.core.logging.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Date;
+import java.util.List;
 
 import static de.fraunhofer.fokus.ids.persistence.util.Functions.checkNull;
 /**
@@ -23,114 +29,211 @@ public class DataAssetManager {
 
 	private Logger LOGGER = LoggerFactory.getLogger(DataAssetManager.class.getName());
 	private DatabaseService dbService;
+	private VersionStamps versionStamps;
+	private DataAssetCounters counters;
+	private Vertx vertx;
 
 	private static final String FINDBYID_QUERY = "SELECT * FROM DataAsset WHERE id = ?";
 	private static final String FINDPUBLISHED_QUERY = "SELECT * FROM DataAsset WHERE status = ?";
+	private static final String FINDPUBLISHEDBYIDS_QUERY = "SELECT * FROM DataAsset WHERE id = ANY(?) AND status = ?";
+	private static final String FINDPUBLISHEDAFTER_QUERY = "SELECT * FROM DataAsset WHERE status = ? AND id > ? ORDER BY id LIMIT ?";
+	private static final String FINDPUBLISHEDIDSAFTER_QUERY = "SELECT id FROM DataAsset WHERE status = ? AND id > ? ORDER BY id LIMIT ?";
 	private static final String FINDALL_QUERY = "SELECT * FROM DataAsset ORDER BY id DESC";
-	private static final String COUNT_QUERY = "SELECT COUNT(d) FROM DataAsset d";
-	private static final String COUNTPUBLISHED_QUERY = "SELECT COUNT(d) FROM DataAsset d WHERE d.status = ?";
-	private static final String CHANGESTATUS_UPDATE = "UPDATE DataAsset SET status = ?, updated_at = NOW() WHERE id = ?";
-	private static final String ADDINITIAL_UPDATE = "INSERT INTO DataAsset (created_at, updated_at) values(?,?)";
-	private static final String GETID_QUERY = "SELECT id FROM dataasset WHERE created_at = ? ";
-	private static final String ADD_UPDATE = "Update DataAsset SET updated_at = NOW(), datasetid = ?, name = ?, url = ?,"
+	private static final String COUNTBYSTATUS_QUERY = "SELECT status, COUNT(*) AS count FROM DataAsset GROUP BY status";
+	// the previous status is returned to keep the DataAssetCounters in sync
+	private static final String CHANGESTATUS_UPDATE = "UPDATE DataAsset d SET status = ?, updated_at = NOW()"
+			+ " FROM (SELECT id, status FROM DataAsset WHERE id = ? FOR UPDATE) prev WHERE d.id = prev.id RETURNING prev.status";
+	private static final String FINDDATASOURCE_QUERY = "SELECT * FROM DataSource WHERE id = ?";
+	// the dummy is only inserted if its data source exists, so nothing has to be cleaned up for an unknown data source
+	private static final String ADDINITIAL_QUERY = "INSERT INTO DataAsset (created_at, updated_at) SELECT NOW(), NOW() WHERE EXISTS (SELECT 1 FROM DataSource WHERE id = ?) RETURNING id";
+	private static final String ADD_UPDATE = "Update DataAsset d SET updated_at = NOW(), datasetid = ?, name = ?, url = ?,"
 			+ " format = ?, licenseurl = ?, licensetitle = ?, datasettitle = ?, datasetnotes = ?, orignalresourceurl = ?,"
 			+ " orignaldataseturl = ?, signature = ?, status = ?, resourceid = ?, tags = ?, datasetdescription = ?,"
-			+ " organizationtitle = ?, organizationdescription = ?, version = ?, sourceid = ? WHERE id = ?";
-	private static final String DELETE_UPDATE = "DELETE FROM dataasset WHERE id = ?";
+			+ " organizationtitle = ?, organizationdescription = ?, version = ?, sourceid = ?"
+			+ " FROM (SELECT id, status FROM DataAsset WHERE id = ? FOR UPDATE) prev WHERE d.id = prev.id RETURNING prev.status";
+	private static final String DELETE_UPDATE = "DELETE FROM dataasset WHERE id = ? RETURNING status";
 
 	public DataAssetManager(Vertx vertx) {
+		this.vertx = vertx;
 		dbService = DatabaseService.createProxy(vertx, Constants.DATABASE_SERVICE);
+		versionStamps = new VersionStamps(vertx);
+		counters = new DataAssetCounters(vertx);
 	}
 
-	public void findById(Long id, Handler<AsyncResult<JsonObject>> resultHandler) {
+	public void findById(Long id, Handler<AsyncResult<DataAsset>> resultHandler) {
 		dbService.query(FINDBYID_QUERY, new JsonArray(Arrays.asList(id)), reply -> {
 			if (reply.failed()) {
 				LOGGER.error(reply.cause());
 				resultHandler.handle(Future.failedFuture(reply.cause().toString()));
+			} else if (reply.result().isEmpty()) {
+				resultHandler.handle(Future.failedFuture("DataAsset " + id + " not found."));
 			} else {
-				resultHandler.handle(Future.succeededFuture(reply.result().get(0)));
+				resultHandler.handle(Future.succeededFuture(RowMapper.DATA_ASSET.map(reply.result().get(0))));
 			}
 		});
 	}
 
-	public void findPublished(Handler<AsyncResult<JsonArray>> resultHandler) {
+	public void findPublished(Handler<AsyncResult<List<DataAsset>>> resultHandler) {
 		dbService.query(FINDPUBLISHED_QUERY, new JsonArray(Arrays.asList(DataAssetStatus.PUBLISHED.ordinal())), reply -> {
 			if (reply.failed()) {
 				LOGGER.error(reply.cause());
 				resultHandler.handle(Future.failedFuture(reply.cause().toString()));
 			} else {
-				resultHandler.handle(Future.succeededFuture(new JsonArray(reply.result())));
+				resultHandler.handle(Future.succeededFuture(RowMapper.DATA_ASSET.mapAll(reply.result())));
 			}
 		});
 	}
 
-	public void findAll(Handler<AsyncResult<JsonArray>> resultHandler) {
+	/**
+	 * @param ids ids of the data assets, at most a few hundred per call
+	 * @param resultHandler receives the data assets of the given ids that exist and are published
+	 */
+	public void findPublishedByIds(List<Long> ids, Handler<AsyncResult<List<DataAsset>>> resultHandler) {
+		dbService.query(FINDPUBLISHEDBYIDS_QUERY, new JsonArray().add(new JsonArray(ids)).add(DataAssetStatus.PUBLISHED.ordinal()), reply -> {
+			if (reply.failed()) {
+				LOGGER.error(reply.cause());
+				resultHandler.handle(Future.failedFuture(reply.cause().toString()));
+			} else {
+				resultHandler.handle(Future.succeededFuture(RowMapper.DATA_ASSET.mapAll(reply.result())));
+			}
+		});
+	}
+
+	/**
+	 * @param after the page starts after this id, 0 for the first page
+	 * @param limit maximum number of data assets
+	 * @param resultHandler receives the published data assets ordered by id
+	 */
+	public void findPublishedAfter(Long after, int limit, Handler<AsyncResult<List<DataAsset>>> resultHandler) {
+		dbService.query(FINDPUBLISHEDAFTER_QUERY, new JsonArray().add(DataAssetStatus.PUBLISHED.ordinal()).add(after).add(limit), reply -> {
+			if (reply.failed()) {
+				LOGGER.error(reply.cause());
+				resultHandler.handle(Future.failedFuture(reply.cause().toString()));
+			} else {
+				resultHandler.handle(Future.succeededFuture(RowMapper.DATA_ASSET.mapAll(reply.result())));
+			}
+		});
+	}
+
+	/**
+	 * @param after the ids start after this id, 0 for the first page
+	 * @param limit maximum number of ids
+	 * @param resultHandler receives the ids of the published data assets in order, read from the partial index on the published ids only
+	 */
+	public void findPublishedIdsAfter(Long after, int limit, Handler<AsyncResult<List<Long>>> resultHandler) {
+		dbService.query(FINDPUBLISHEDIDSAFTER_QUERY, new JsonArray().add(DataAssetStatus.PUBLISHED.ordinal()).add(after).add(limit), reply -> {
+			if (reply.failed()) {
+				LOGGER.error(reply.cause());
+				resultHandler.handle(Future.failedFuture(reply.cause().toString()));
+			} else {
+				List<Long> ids = new ArrayList<>(reply.result().size());
+				for (JsonObject row : reply.result()) {
+					ids.add(row.getLong("id"));
+				}
+				resultHandler.handle(Future.succeededFuture(ids));
+			}
+		});
+	}
+
+	public void findAll(Handler<AsyncResult<List<DataAsset>>> resultHandler) {
 		dbService.query(FINDALL_QUERY, new JsonArray(), reply -> {
 			if (reply.failed()) {
 				LOGGER.error(reply.cause());
 				resultHandler.handle(Future.failedFuture(reply.cause().toString()));
 			} else {
-				resultHandler.handle(Future.succeededFuture(new JsonArray(reply.result())));
+				resultHandler.handle(Future.succeededFuture(RowMapper.DATA_ASSET.mapAll(reply.result())));
 			}
 		});
 	}
 
-	public void count(Handler<AsyncResult<Long>> resultHandler) {
-		dbService.query(COUNT_QUERY, new JsonArray(), reply -> {
+	public void findPage(Integer status, String sourceId, Long after, int limit, Handler<AsyncResult<Page<DataAsset>>> resultHandler) {
+		PageQuery pageQuery = new PageQuery("dataasset")
+				.filter("status", status)
+				.filter("sourceid", sourceId)
+				.after(after)
+				.limit(limit);
+
+		dbService.transaction(pageQuery.statements(), reply -> {
 			if (reply.failed()) {
 				LOGGER.error(reply.cause());
 				resultHandler.handle(Future.failedFuture(reply.cause().toString()));
 			} else {
-				resultHandler.handle(Future.succeededFuture(reply.result().get(0).getLong("count")));
+				resultHandler.handle(Future.succeededFuture(pageQuery.toPage(reply.result(), RowMapper.DATA_ASSET)));
 			}
 		});
 	}
 
-	public void countPublished(Handler<AsyncResult<Long>> resultHandler) {
-		dbService.query(COUNTPUBLISHED_QUERY,new JsonArray(Arrays.asList(DataAssetStatus.PUBLISHED.ordinal())), reply -> {
+	public RowStream streamAll(int chunkSize) {
+		return new RowStream(vertx, dbService, FINDALL_QUERY, new JsonArray(), chunkSize);
+	}
+
+	/**
+	 * @param resultHandler receives the total and the count of every status, served from the DataAssetCounters
+	 */
+	public void counts(Handler<AsyncResult<JsonObject>> resultHandler) {
+		if (counters.isSeeded()) {
+			resultHandler.handle(Future.succeededFuture(counters.get()));
+		} else {
+			seedCounters(reply -> {
+				if (reply.failed()) {
+					resultHandler.handle(Future.failedFuture(reply.cause()));
+				} else {
+					resultHandler.handle(Future.succeededFuture(counters.get()));
+				}
+			});
+		}
+	}
+
+	public void seedCounters(Handler<AsyncResult<Void>> resultHandler) {
+		dbService.query(COUNTBYSTATUS_QUERY, new JsonArray(), reply -> {
 			if (reply.failed()) {
 				LOGGER.error(reply.cause());
 				resultHandler.handle(Future.failedFuture(reply.cause().toString()));
 			} else {
-				resultHandler.handle(Future.succeededFuture(reply.result().get(0).getLong("count")));
+				counters.seed(new JsonArray(reply.result()));
+				resultHandler.handle(Future.succeededFuture());
 			}
 		});
 	}
 
 	public void changeStatus(DataAssetStatus status, Long id, Handler<AsyncResult<Void>> resultHandler) {
-		dbService.update(CHANGESTATUS_UPDATE,new JsonArray().add(status.ordinal()).add(id), reply -> {
+		dbService.query(CHANGESTATUS_UPDATE,new JsonArray().add(status.ordinal()).add(id), reply -> {
 			if (reply.failed()) {
 				LOGGER.error(reply.cause());
 				resultHandler.handle(Future.failedFuture(reply.cause().toString()));
 			} else {
+				Integer previous = reply.result().isEmpty() ? null : reply.result().get(0).getInteger("status");
+				if (previous != null) {
+					counters.changed(previous, status.ordinal());
+				}
+				bump(id, previous, status.ordinal());
 				resultHandler.handle(Future.succeededFuture());
 			}
 		});
 	}
 
-	public void addInitial(Handler<AsyncResult<Long>> resultHandler){
-		Date d = new Date();
-		JsonArray params = new JsonArray()
-				.add(d.toInstant())
-				.add(d.toInstant());
-
-		dbService.update(ADDINITIAL_UPDATE, params, reply -> {
+	/**
+	 * Inserts the dummy of a new data asset and reads its data source in one transaction.
+	 * @param resultHandler receives the id of the dummy as "id" and the row of the data source as "dataSource"
+	 */
+	public void addInitial(Long dataSourceId, Handler<AsyncResult<JsonObject>> resultHandler){
+		dbService.transaction(Arrays.asList(
+				Statements.query(FINDDATASOURCE_QUERY, new JsonArray().add(dataSourceId)),
+				Statements.query(ADDINITIAL_QUERY, new JsonArray().add(dataSourceId))), reply -> {
 			if (reply.succeeded()) {
-				dbService.query(GETID_QUERY, new JsonArray().add(d.toInstant()), reply2 -> {
-					if(reply2.succeeded()){
-						if(reply2.result().size() == 1) {
-							resultHandler.handle(Future.succeededFuture(reply2.result().get(0).getLong("id")));
-						}
-						else{
-							LOGGER.error("Concurrency exception.");
-							resultHandler.handle(Future.failedFuture("Concurrency exception."));
-						}
-					}
-					else{
-						LOGGER.error(reply2.cause());
-						resultHandler.handle(Future.failedFuture(reply2.cause()));
-					}
-				});
+				JsonArray dataSources = reply.result().get(0);
+				JsonArray ids = reply.result().get(1);
+				if(dataSources.isEmpty() || ids.isEmpty()) {
+					resultHandler.handle(Future.failedFuture("DataSource " + dataSourceId + " not found."));
+				}
+				else {
+					long id = ids.getJsonObject(0).getLong("id");
+					counters.created(null);
+					versionStamps.bump(VersionStamps.DATA_ASSETS, id);
+					resultHandler.handle(Future.succeededFuture(new JsonObject()
+							.put("id", id)
+							.put("dataSource", dataSources.getJsonObject(0))));
+				}
 			} else {
 				LOGGER.error(reply.cause());
 				resultHandler.handle(Future.failedFuture(reply.cause()));
@@ -138,9 +241,7 @@ public class DataAssetManager {
 		});
 	}
 
-	public void add(JsonObject dataAssetJson, Handler<AsyncResult<Void>> resultHandler) {
-
-		DataAsset dataAsset = Json.decodeValue(dataAssetJson.toString(),DataAsset.class);
+	public void add(DataAsset dataAsset, Handler<AsyncResult<Void>> resultHandler) {
 
 		JsonArray params = new JsonArray()
 				.add(checkNull(dataAsset.getDatasetID()))
@@ -164,24 +265,47 @@ public class DataAssetManager {
 				.add(checkNull(dataAsset.getSourceID().toString()))
 				.add(dataAsset.getId());
 
-		dbService.update(ADD_UPDATE,params, reply -> {
+		dbService.query(ADD_UPDATE,params, reply -> {
 			if (reply.failed()) {
 				LOGGER.error(reply.cause());
 				resultHandler.handle(Future.failedFuture(reply.cause().toString()));
 			} else {
+				Integer previous = reply.result().isEmpty() ? null : reply.result().get(0).getInteger("status");
+				if (previous != null) {
+					counters.changed(previous, params.getInteger(11));
+				}
+				bump(dataAsset.getId(), previous, params.getInteger(11));
 				resultHandler.handle(Future.succeededFuture());
 			}
 		});
 	}
 
 	public void delete(Long id, Handler<AsyncResult<Void>> resultHandler) {
-		dbService.update(DELETE_UPDATE, new JsonArray().add(id), reply -> {
+		dbService.query(DELETE_UPDATE, new JsonArray().add(id), reply -> {
 			if (reply.failed()) {
 				LOGGER.error(reply.cause());
 				resultHandler.handle(Future.failedFuture(reply.cause().toString()));
 			} else {
+				Integer previous = reply.result().isEmpty() ? null : reply.result().get(0).getInteger("status");
+				if (previous != null) {
+					counters.deleted(previous);
+				}
+				bump(id, previous, null);
 				resultHandler.handle(Future.succeededFuture());
 			}
 		});
 	}
+
+	/**
+	 * Bumps the data asset version and, if the asset was or is published, the version of the published data assets.
+	 * @param previous status before the write, null if the asset did not exist
+	 * @param current status after the write, null if the asset was deleted
+	 */
+	private void bump(Long id, Integer previous, Integer current) {
+		versionStamps.bump(VersionStamps.DATA_ASSETS, id);
+		int published = DataAssetStatus.PUBLISHED.ordinal();
+		if (Integer.valueOf(published).equals(previous) || Integer.valueOf(published).equals(current)) {
+			versionStamps.bump(VersionStamps.PUBLISHED);
+		}
+	}
 }
@@ -3,6 +3,9 @@ package de.fraunhofer.fokus.ids.persistence.managers;
 import de.fraunhofer.fokus.ids.models.Constants;
 import de.fraunhofer.fokus.ids.persistence.entities.DataSource;
 import de.fraunhofer.fokus.ids.persistence.service.DatabaseService;
+import de.fraunhofer.fokus.ids.persistence.util.PageQuery;
+import de.fraunhofer.fokus.ids.persistence.util.RowMapper;
+import de.fraunhofer.fokus.ids.persistence.util.VersionStamps;
 import io.vertx.core.*;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
@@ -16,6 +19,7 @@ import static de.fraunhofer.fokus.ids.persistence.util.Functions.checkNull;
 public class DataSourceManager {
 
     private DatabaseService dbService;
+    private VersionStamps versionStamps;
     private Logger LOGGER = LoggerFactory.getLogger(DataSourceManager.class.getName());
 
     private static final String UPDATE_QUERY = "UPDATE DataSource SET updated_at = NOW(), datasourcename = ?, data = ?, datasourcetype = ? WHERE id = ?";
@@ -29,6 +33,7 @@ public class DataSourceManager {
 
     public DataSourceManager(Vertx vertx) {
         dbService = DatabaseService.createProxy(vertx, Constants.DATABASE_SERVICE);
+        versionStamps = new VersionStamps(vertx);
     }
 
     public void update(DataSource dataSource, Handler<AsyncResult<Void>> resultHandler) {
@@ -44,6 +49,7 @@ public class DataSourceManager {
                 LOGGER.error(reply.cause());
                 resultHandler.handle(Future.failedFuture(reply.cause().toString()));
             } else {
+                versionStamps.bump(VersionStamps.DATA_SOURCES, dataSource.getId());
                 resultHandler.handle(Future.succeededFuture());
             }
         });
@@ -62,6 +68,7 @@ public class DataSourceManager {
                 LOGGER.error(reply.cause());
                 resultHandler.handle(Future.failedFuture(reply.cause().toString()));
             } else {
+                versionStamps.bump(VersionStamps.DATA_SOURCES);
                 resultHandler.handle(Future.succeededFuture());
             }
         });
@@ -73,6 +80,7 @@ public class DataSourceManager {
                 LOGGER.error(reply.cause());
                 resultHandler.handle(Future.failedFuture(reply.cause().toString()));
             } else {
+                versionStamps.bump(VersionStamps.DATA_SOURCES, id);
                 resultHandler.handle(Future.succeededFuture());
             }
         });
@@ -89,11 +97,26 @@ public class DataSourceManager {
         });
     }
 
-    public void findById(Long id, Handler<AsyncResult<JsonObject>> resultHandler) {
+    public void findById(Long id, Handler<AsyncResult<DataSource>> resultHandler) {
+        findRowById(id, reply -> {
+            if (reply.failed()) {
+                resultHandler.handle(Future.failedFuture(reply.cause()));
+            } else {
+                resultHandler.handle(Future.succeededFuture(RowMapper.DATA_SOURCE.map(reply.result())));
+            }
+        });
+    }
+
+    /**
+     * @param resultHandler receives the unmapped row, for passing it on as JSON
+     */
+    public void findRowById(Long id, Handler<AsyncResult<JsonObject>> resultHandler) {
         dbService.query(FINDBYID_QUERY,new JsonArray().add(id), reply -> {
             if (reply.failed()) {
                 LOGGER.error(reply.cause());
                 resultHandler.handle(Future.failedFuture(reply.cause().toString()));
+            } else if (reply.result().isEmpty()) {
+                resultHandler.handle(Future.failedFuture("DataSource " + id + " not found."));
             } else {
                 resultHandler.handle(Future.succeededFuture(reply.result().get(0)));
             }
@@ -111,6 +134,22 @@ public class DataSourceManager {
         });
     }
 
+    public void findPage(String type, Long after, int limit, Handler<AsyncResult<JsonObject>> resultHandler) {
+        PageQuery pageQuery = new PageQuery("datasource")
+                .filter("datasourcetype", type)
+                .after(after)
+                .limit(limit);
+
+        dbService.transaction(pageQuery.statements(), reply -> {
+            if (reply.failed()) {
+                LOGGER.error(reply.cause());
+                resultHandler.handle(Future.failedFuture(reply.cause().toString()));
+            } else {
+                resultHandler.handle(Future.succeededFuture(pageQuery.toPage(reply.result())));
+            }
+        });
+    }
+
     public void findTypeById(Long id, Handler<AsyncResult<Long>> resultHandler) {
         dbService.query(FINDTYPEBYID_QUERY, new JsonArray().add(id), reply -> {
             if (reply.failed()) {
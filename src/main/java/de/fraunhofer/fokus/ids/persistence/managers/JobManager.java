@@ -4,8 +4,9 @@ import de.fraunhofer.fokus.ids.models.Constants;
 import de.fraunhofer.fokus.ids.models.DataAssetDescription;
 import de.fraunhofer.fokus.ids.persistence.enums.JobStatus;
 import de.fraunhofer.fokus.ids.persistence.service.DatabaseService;
+import de.fraunhofer.fokus.ids.persistence.service.RowStream;
+import de.fraunhofer.fokus.ids.persistence.util.PageQuery;
 import io.vertx.core.*;
-import io.vertx.core.json.Json;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.logging.Logger;
@@ -18,6 +19,7 @@ import java.util.HashMap;
 public class JobManager {
 
 	private DatabaseService dbService;
+	private Vertx vertx;
 	private Logger LOGGER = LoggerFactory.getLogger(JobManager.class.getName());
 
 	private static final String ADD_QUERY = "INSERT INTO job (created_at,updated_at,data,status,sourceid, sourcetype) values (NOW(), NOW(), ?, ?, ?, ?) RETURNING id";
@@ -26,15 +28,18 @@ public class JobManager {
 	private static final String UPDATESTATUS_QUERY = "UPDATE job SET status = ?, updated_at = NOW() WHERE id = ?";
 
 	public JobManager(Vertx vertx) {
+		this.vertx = vertx;
 		dbService = DatabaseService.createProxy(vertx, Constants.DATABASE_SERVICE);
 	}
 
-	public void add(JsonObject dataAssetDescriptionJson, Handler<AsyncResult<JsonObject>> resultHandler) {
-		DataAssetDescription dataAssetDescription = Json.decodeValue(dataAssetDescriptionJson.toString(), DataAssetDescription.class);
-
+	/**
+	 * @param status the status the job starts with, e.g. RUNNING for a job that is started right away
+	 * @param resultHandler receives the id of the new job
+	 */
+	public void add(DataAssetDescription dataAssetDescription, JobStatus status, Handler<AsyncResult<Long>> resultHandler) {
 		JsonArray params = new JsonArray()
 				.add(new JsonObject((dataAssetDescription.getData().isEmpty() ? new HashMap<>() : dataAssetDescription.getData())).toString())
-				.add(JobStatus.CREATED.ordinal())
+				.add(status.ordinal())
 				.add(dataAssetDescription.getSourceId())
 				.add(dataAssetDescription.getDatasourcetype());
 
@@ -43,7 +48,7 @@ public class JobManager {
 				LOGGER.error(reply.cause());
 				resultHandler.handle(Future.failedFuture(reply.cause().toString()));
 			} else {
-				resultHandler.handle(Future.succeededFuture(reply.result().get(0)));
+				resultHandler.handle(Future.succeededFuture(reply.result().get(0).getLong("id")));
 			}
 		});
 	}
@@ -59,6 +64,28 @@ public class JobManager {
 		});
 	}
 
+	public void findPage(Integer status, Long sourceId, String sourceType, Long after, int limit, Handler<AsyncResult<JsonObject>> resultHandler) {
+		PageQuery pageQuery = new PageQuery("job")
+				.filter("status", status)
+				.filter("sourceid", sourceId)
+				.filter("sourcetype", sourceType)
+				.after(after)
+				.limit(limit);
+
+		dbService.transaction(pageQuery.statements(), reply -> {
+			if (reply.failed()) {
+				LOGGER.error(reply.cause());
+				resultHandler.handle(Future.failedFuture(reply.cause().toString()));
+			} else {
+				resultHandler.handle(Future.succeededFuture(pageQuery.toPage(reply.result())));
+			}
+		});
+	}
+
+	public RowStream streamAll(int chunkSize) {
+		return new RowStream(vertx, dbService, FINDALL_QUERY, new JsonArray(), chunkSize);
+	}
+
 	public void deleteAll(Handler<AsyncResult<Void>> resultHandler) {
 		dbService.update(DELETEALL_QUERY, new JsonArray(), reply -> {
 			if (reply.failed()) {
@@ -1,5 +1,6 @@
 package de.fraunhofer.fokus.ids.persistence.service;
 
+import de.fraunhofer.fokus.ids.codecs.Codecs;
 import io.vertx.codegen.annotations.Fluent;
 import io.vertx.codegen.annotations.GenIgnore;
 import io.vertx.codegen.annotations.ProxyGen;
@@ -25,13 +26,33 @@ public interface DatabaseService {
     @Fluent
     DatabaseService update(String query, JsonArray params, Handler<AsyncResult<List<JsonObject>>> resultHandler);
 
+    /**
+     * Performs several statements on a single connection inside one transaction.
+     * Statements are created via {@link de.fraunhofer.fokus.ids.persistence.util.Statements}.
+     * @param statements ordered list of QUERY, UPDATE or BATCH statements
+     * @param resultHandler one JsonArray per statement: the selected rows for QUERY statements,
+     *                      one object with the number of updated rows per parameter set for UPDATE and BATCH statements.
+     *                      Ends early with the rows of a guard statement that selected rows.
+     */
+    @Fluent
+    DatabaseService transaction(List<JsonObject> statements, Handler<AsyncResult<List<JsonArray>>> resultHandler);
+
+    /**
+     * Performs the query through a server side cursor and sends the rows in chunks of chunkSize rows as JsonArray
+     * to the given event bus address, followed by a message marking the end or a failure. The next chunk is only fetched
+     * after the previous one was acknowledged on the control address of the consumer. Use {@link RowStream} on the consumer side.
+     * @param resultHandler completed as soon as the cursor is declared, so the reply does not wait for the whole stream
+     */
+    @Fluent
+    DatabaseService queryStream(String query, JsonArray params, int chunkSize, String address, Handler<AsyncResult<Void>> resultHandler);
+
     @GenIgnore
-    static DatabaseService create(SQLClient dbClient, Handler<AsyncResult<DatabaseService>> readyHandler) {
-        return new DatabaseServiceImpl(dbClient, readyHandler);
+    static DatabaseService create(Vertx vertx, SQLClient dbClient, Handler<AsyncResult<DatabaseService>> readyHandler) {
+        return new DatabaseServiceImpl(vertx, dbClient, readyHandler);
     }
 
     @GenIgnore
     static DatabaseService createProxy(Vertx vertx, String address) {
-        return new DatabaseServiceVertxEBProxy(vertx, address);
+        return new DatabaseServiceVertxEBProxy(vertx, address, Codecs.proxyOptions());
     }
 }
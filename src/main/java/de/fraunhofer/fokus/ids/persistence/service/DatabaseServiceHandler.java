@@ -0,0 +1,89 @@
+package de.fraunhofer.fokus.ids.persistence.service;
+
+import de.fraunhofer.fokus.ids.codecs.Codecs;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.eventbus.MessageConsumer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Receives the messages of the generated DatabaseService proxy in place of the generated ProxyHandler,
+ * which replies with the default JSON codecs and thereby deep copies every result. The results are replied by reference instead.
+ * As with the generated ProxyHandler the action header names the method and the body holds its parameters.
+ * @author Vincent Bohlen, vincent.bohlen@fokus.fraunhofer.de
+ */
+public class DatabaseServiceHandler implements Handler<Message<JsonObject>> {
+
+    private final DatabaseService service;
+
+    public DatabaseServiceHandler(DatabaseService service) {
+        this.service = service;
+    }
+
+    public MessageConsumer<JsonObject> register(Vertx vertx, String address) {
+        return vertx.eventBus().consumer(address, this);
+    }
+
+    @Override
+    public void handle(Message<JsonObject> message) {
+        JsonObject body = message.body();
+        String action = message.headers().get("action");
+        try {
+            if (action == null) {
+                message.fail(-1, "action not specified");
+                return;
+            }
+            switch (action) {
+                case "query":
+                    service.query(body.getString("query"), body.getJsonArray("params"), replyList(message));
+                    break;
+                case "update":
+                    service.update(body.getString("query"), body.getJsonArray("params"), replyList(message));
+                    break;
+                case "transaction":
+                    service.transaction(statements(body.getJsonArray("statements")), replyList(message));
+                    break;
+                case "queryStream":
+                    service.queryStream(body.getString("query"), body.getJsonArray("params"), body.getInteger("chunkSize"), body.getString("address"), reply -> {
+                        if (reply.succeeded()) {
+                            message.reply(null);
+                        } else {
+                            message.fail(-1, reply.cause().getMessage());
+                        }
+                    });
+                    break;
+                default:
+                    message.fail(-1, "Invalid action: " + action);
+            }
+        } catch (RuntimeException e) {
+            message.fail(-1, e.getMessage());
+        }
+    }
+
+    /**
+     * The result list is created for this request only, so it is wrapped and handed over without a copy.
+     */
+    private <T> Handler<AsyncResult<List<T>>> replyList(Message<JsonObject> message) {
+        return reply -> {
+            if (reply.succeeded()) {
+                message.reply(new JsonArray(reply.result()), Codecs.replyOptions());
+            } else {
+                message.fail(-1, reply.cause().getMessage());
+            }
+        };
+    }
+
+    private List<JsonObject> statements(JsonArray statements) {
+        List<JsonObject> list = new ArrayList<>(statements.size());
+        for (int i = 0; i < statements.size(); i++) {
+            list.add(statements.getJsonObject(i));
+        }
+        return list;
+    }
+}
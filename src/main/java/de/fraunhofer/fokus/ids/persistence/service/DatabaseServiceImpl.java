@@ -3,6 +3,8 @@ package de.fraunhofer.fokus.ids.persistence.service;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.MessageConsumer;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.logging.Logger;
@@ -13,19 +15,24 @@ import io.vertx.ext.sql.SQLConnection;
 
 import java.lang.reflect.Array;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.UUID;
 /**
  * @author Vincent Bohlen, vincent.bohlen@fokus.fraunhofer.de
  */
 public class DatabaseServiceImpl implements DatabaseService {
     private Logger LOGGER = LoggerFactory.getLogger(DatabaseServiceImpl.class.getName());
     private SQLClient jdbc;
+    private Vertx vertx;
 
     public enum ConnectionType{
         QUERY,
-        UPDATE
+        UPDATE,
+        BATCH
     }
-    public DatabaseServiceImpl(SQLClient dbClient, Handler<AsyncResult<DatabaseService>> readyHandler){
+    public DatabaseServiceImpl(Vertx vertx, SQLClient dbClient, Handler<AsyncResult<DatabaseService>> readyHandler){
+        this.vertx = vertx;
         this.jdbc = dbClient;
         readyHandler.handle(Future.succeededFuture(this));
     }
@@ -42,6 +49,20 @@ public class DatabaseServiceImpl implements DatabaseService {
         return this;
     }
 
+    @Override
+    public DatabaseService transaction(List<JsonObject> statements, Handler<AsyncResult<List<JsonArray>>> resultHandler) {
+        createConnection(connection -> handleTransaction(connection, statements, resultHandler));
+        return this;
+    }
+
+    @Override
+    public DatabaseService queryStream(String query, JsonArray params, int chunkSize, String address, Handler<AsyncResult<Void>> resultHandler) {
+        // registered before anything else, so a cancellation of the consumer is not missed
+        StreamControl control = new StreamControl(address);
+        createConnection(connection -> handleQueryStream(connection, query, params, chunkSize > 0 ? chunkSize : RowStream.DEFAULT_CHUNK_SIZE, address, control, resultHandler));
+        return this;
+    }
+
     /**
      * processing pipeline to create the intended result
      * @param queryString SQL Query to perform
@@ -183,6 +204,303 @@ public class DatabaseServiceImpl implements DatabaseService {
         }
     }
 
+    /**
+     * Method to perform a list of statements inside one transaction on the connection retrieved via createConnection
+     * @param result Connection future produced by createConnection
+     * @param statements statements to perform in the given order
+     */
+    private void handleTransaction(AsyncResult<SQLConnection> result,
+                                   List<JsonObject> statements,
+                                   Handler<AsyncResult<List<JsonArray>>> resultHandler) {
+
+        if(result.failed()){
+            LOGGER.error("Connection Future failed.", result.cause());
+            resultHandler.handle(Future.failedFuture(result.cause().toString()));
+        }
+        else {
+            SQLConnection connection = result.result();
+            connection.setAutoCommit(false, begin -> {
+                if (begin.succeeded()) {
+                    List<JsonArray> results = new ArrayList<>();
+                    executeStatements(connection, statements.iterator(), results, execution -> {
+                        if (execution.succeeded()) {
+                            connection.commit(commit -> {
+                                if (commit.succeeded()) {
+                                    resultHandler.handle(Future.succeededFuture(results));
+                                } else {
+                                    LOGGER.error("Commit failed.", commit.cause());
+                                    resultHandler.handle(Future.failedFuture(commit.cause()));
+                                }
+                                connection.close();
+                            });
+                        } else {
+                            LOGGER.error("Transaction failed.", execution.cause());
+                            connection.rollback(rollback -> {
+                                if (rollback.failed()) {
+                                    LOGGER.error("Rollback failed.", rollback.cause());
+                                }
+                                resultHandler.handle(Future.failedFuture(execution.cause()));
+                                connection.close();
+                            });
+                        }
+                    });
+                } else {
+                    LOGGER.error("Transaction could not be started.", begin.cause());
+                    resultHandler.handle(Future.failedFuture(begin.cause()));
+                    connection.close();
+                }
+            });
+        }
+    }
+
+    /**
+     * Performs the statements one after another. Stops at the first failing statement and at the first guard selecting rows.
+     * @param connection connection with an open transaction
+     * @param statements remaining statements
+     * @param results collected results, one JsonArray per performed statement
+     */
+    private void executeStatements(SQLConnection connection,
+                                   Iterator<JsonObject> statements,
+                                   List<JsonArray> results,
+                                   Handler<AsyncResult<Void>> next) {
+
+        if (!statements.hasNext()) {
+            next.handle(Future.succeededFuture());
+            return;
+        }
+        JsonObject statement = statements.next();
+        String queryString = statement.getString("query");
+        Handler<AsyncResult<JsonArray>> step = reply -> {
+            if (reply.succeeded()) {
+                results.add(reply.result());
+                executeStatements(connection, statements, results, next);
+            } else {
+                next.handle(Future.failedFuture(reply.cause()));
+            }
+        };
+
+        ConnectionType type;
+        try {
+            type = ConnectionType.valueOf(statement.getString("type", ConnectionType.QUERY.name()));
+        } catch (IllegalArgumentException | ClassCastException e) {
+            // failed through next, so the transaction is rolled back and the connection closed
+            LOGGER.error("Unknown Connection type specified.", e);
+            next.handle(Future.failedFuture(e));
+            return;
+        }
+
+        switch (type) {
+            case QUERY:
+                connection.queryWithParams(queryString, statement.getJsonArray("params", new JsonArray()), query -> {
+                    if (query.succeeded()) {
+                        JsonArray rows = new JsonArray(query.result().getRows());
+                        if (statement.getBoolean("guard", false) && !rows.isEmpty()) {
+                            results.add(rows);
+                            next.handle(Future.succeededFuture());
+                        } else {
+                            step.handle(Future.succeededFuture(rows));
+                        }
+                    } else {
+                        LOGGER.error("Query failed.", query.cause());
+                        step.handle(Future.failedFuture(query.cause()));
+                    }
+                });
+                break;
+            case UPDATE:
+                connection.updateWithParams(queryString, statement.getJsonArray("params", new JsonArray()), update -> {
+                    if (update.succeeded()) {
+                        step.handle(Future.succeededFuture(new JsonArray().add(updated(update.result().getUpdated()))));
+                    } else {
+                        LOGGER.error("Update failed.", update.cause());
+                        step.handle(Future.failedFuture(update.cause()));
+                    }
+                });
+                break;
+            case BATCH:
+                executeBatch(connection, queryString, statement.getJsonArray("params", new JsonArray()), 0, new JsonArray(), step);
+                break;
+            default:
+                step.handle(Future.failedFuture("Unknown Connection type specified."));
+        }
+    }
+
+    /**
+     * Performs the same update statement for every parameter set on the connection.
+     * The async postgres client does not implement batchWithParams, so the parameter sets are sent one after another
+     * on the already checked out connection.
+     * @param queryString SQL String to perform
+     * @param paramSets JsonArray of parameter JsonArrays
+     * @param index index of the next parameter set
+     * @param counts number of updated rows per performed parameter set
+     */
+    private void executeBatch(SQLConnection connection,
+                              String queryString,
+                              JsonArray paramSets,
+                              int index,
+                              JsonArray counts,
+                              Handler<AsyncResult<JsonArray>> next) {
+
+        if (index >= paramSets.size()) {
+            next.handle(Future.succeededFuture(counts));
+            return;
+        }
+        connection.updateWithParams(queryString, paramSets.getJsonArray(index), update -> {
+            if (update.succeeded()) {
+                counts.add(updated(update.result().getUpdated()));
+                executeBatch(connection, queryString, paramSets, index + 1, counts, next);
+            } else {
+                LOGGER.error("Batch update failed.", update.cause());
+                next.handle(Future.failedFuture(update.cause()));
+            }
+        });
+    }
+
+    private JsonObject updated(int count) {
+        return new JsonObject().put("updated", count);
+    }
+
+    /**
+     * Method to declare a cursor for the query on the connection retrieved via createConnection and to stream its rows
+     * @param result Connection future produced by createConnection
+     * @param queryString SQL String to query
+     * @param params params for the SQL query
+     * @param chunkSize number of rows fetched from the cursor and sent per message
+     * @param address event bus address of the consuming RowStream
+     * @param control receives the acknowledgements and the cancellation of the RowStream
+     * @param resultHandler completed as soon as the cursor is declared
+     */
+    private void handleQueryStream(AsyncResult<SQLConnection> result,
+                                   String queryString,
+                                   JsonArray params,
+                                   int chunkSize,
+                                   String address,
+                                   StreamControl control,
+                                   Handler<AsyncResult<Void>> resultHandler) {
+
+        if(result.failed()){
+            LOGGER.error("Connection Future failed.", result.cause());
+            control.close();
+            resultHandler.handle(Future.failedFuture(result.cause().toString()));
+        }
+        else {
+            SQLConnection connection = result.result();
+            String cursor = "cursor_" + UUID.randomUUID().toString().replace("-", "");
+            connection.setAutoCommit(false, begin -> {
+                if (begin.succeeded()) {
+                    connection.updateWithParams("DECLARE " + cursor + " NO SCROLL CURSOR FOR " + queryString, params, declare -> {
+                        if (declare.succeeded()) {
+                            resultHandler.handle(Future.succeededFuture());
+                            fetchChunks(connection, cursor, chunkSize, address, control, fetch -> {
+                                control.close();
+                                // the transaction only holds the cursor, rolling back releases it without side effects
+                                connection.rollback(rollback -> {
+                                    if (rollback.failed()) {
+                                        LOGGER.error("Cursor could not be released.", rollback.cause());
+                                    }
+                                    connection.close();
+                                });
+                            });
+                        } else {
+                            LOGGER.error("Cursor could not be declared.", declare.cause());
+                            control.close();
+                            resultHandler.handle(Future.failedFuture(declare.cause()));
+                            connection.close();
+                        }
+                    });
+                } else {
+                    LOGGER.error("Transaction could not be started.", begin.cause());
+                    control.close();
+                    resultHandler.handle(Future.failedFuture(begin.cause()));
+                    connection.close();
+                }
+            });
+        }
+    }
+
+    /**
+     * Fetches the next chunk from the cursor and sends it to the consumer. Continues after the consumer acknowledged the chunk,
+     * which may take arbitrarily long while the consumer is paused. The end of the rows or a failure is sent to the consumer as the last message.
+     */
+    private void fetchChunks(SQLConnection connection,
+                             String cursor,
+                             int chunkSize,
+                             String address,
+                             StreamControl control,
+                             Handler<AsyncResult<Void>> next) {
+
+        if (control.cancelled) {
+            LOGGER.info("Row stream was cancelled by the consumer.");
+            next.handle(Future.failedFuture("Row stream was cancelled by the consumer."));
+            return;
+        }
+        connection.query("FETCH FORWARD " + chunkSize + " FROM " + cursor, fetch -> {
+            if (fetch.succeeded()) {
+                List<JsonObject> rows = fetch.result().getRows();
+                if (rows.isEmpty()) {
+                    vertx.eventBus().send(address, new JsonArray(), RowStream.deliveryOptions(RowStream.END));
+                    next.handle(Future.succeededFuture());
+                } else {
+                    // the consumer confirms the receipt right away, so the timeout only detects a consumer that is gone
+                    vertx.eventBus().send(address, new JsonArray(rows), RowStream.deliveryOptions(RowStream.ROWS), receipt -> {
+                        if (receipt.failed()) {
+                            control.cancel();
+                        }
+                    });
+                    control.await(() -> fetchChunks(connection, cursor, chunkSize, address, control, next));
+                }
+            } else {
+                LOGGER.error("Fetch failed.", fetch.cause());
+                vertx.eventBus().send(address, new JsonArray().add(String.valueOf(fetch.cause().getMessage())), RowStream.deliveryOptions(RowStream.ERROR));
+                next.handle(Future.failedFuture(fetch.cause()));
+            }
+        });
+    }
+
+    /**
+     * Producer side of a RowStream: the acknowledgements and the cancellation of the consumer arrive on its control address.
+     * Acknowledgements are sent without a reply, so a paused consumer does not run into a timeout.
+     */
+    private class StreamControl {
+        private final MessageConsumer<String> consumer;
+        private Runnable acknowledged;
+        private boolean cancelled;
 
+        private StreamControl(String address) {
+            this.consumer = vertx.eventBus().consumer(RowStream.controlAddress(address), message -> {
+                if (RowStream.ACK.equals(message.body())) {
+                    Runnable next = acknowledged;
+                    acknowledged = null;
+                    if (next != null) {
+                        next.run();
+                    }
+                } else {
+                    cancel();
+                }
+            });
+        }
+
+        /**
+         * @param next continues the stream after the acknowledgement of the last chunk, or after a cancellation
+         */
+        private void await(Runnable next) {
+            if (cancelled) {
+                next.run();
+            } else {
+                acknowledged = next;
+            }
+        }
+
+        private void cancel() {
+            cancelled = true;
+            Runnable next = acknowledged;
+            acknowledged = null;
+            if (next != null) {
+                next.run();
+            }
+        }
 
+        private void close() {
+            consumer.unregister();
+        }
+    }
 }
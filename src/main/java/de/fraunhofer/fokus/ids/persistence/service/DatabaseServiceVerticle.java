@@ -1,5 +1,6 @@
 package de.fraunhofer.fokus.ids.persistence.service;
 
+import de.fraunhofer.fokus.ids.codecs.Codecs;
 import de.fraunhofer.fokus.ids.models.Constants;
 import io.vertx.config.ConfigRetriever;
 import io.vertx.config.ConfigRetrieverOptions;
@@ -11,7 +12,6 @@ import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
 import io.vertx.ext.asyncsql.PostgreSQLClient;
 import io.vertx.ext.sql.SQLClient;
-import io.vertx.serviceproxy.ServiceBinder;
 /**
  * @author Vincent Bohlen, vincent.bohlen@fokus.fraunhofer.de
  */
@@ -21,6 +21,7 @@ public class DatabaseServiceVerticle extends AbstractVerticle {
 
     @Override
     public void start(Future<Void> startFuture) {
+        Codecs.register(vertx);
 
         ConfigStoreOptions confStore = new ConfigStoreOptions()
                 .setType("env");
@@ -40,12 +41,9 @@ public class DatabaseServiceVerticle extends AbstractVerticle {
                         .put("password", env.getString("PASSWORD"));
 
                 SQLClient jdbc = PostgreSQLClient.createShared(vertx, config);
-                DatabaseService.create(jdbc, ready -> {
+                DatabaseService.create(vertx, jdbc, ready -> {
                     if (ready.succeeded()) {
-                        ServiceBinder binder = new ServiceBinder(vertx);
-                        binder
-                                .setAddress(Constants.DATABASE_SERVICE)
-                                .register(DatabaseService.class, ready.result());
+                        new DatabaseServiceHandler(ready.result()).register(vertx, Constants.DATABASE_SERVICE);
                         LOGGER.info("Databaseservice successfully started.");
                         startFuture.complete();
                     } else {
@@ -0,0 +1,186 @@
+package de.fraunhofer.fokus.ids.persistence.service;
+
+import de.fraunhofer.fokus.ids.codecs.Codecs;
+import de.fraunhofer.fokus.ids.models.Constants;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.eventbus.MessageConsumer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.core.streams.ReadStream;
+
+import java.util.UUID;
+
+/**
+ * Consumer side of DatabaseService.queryStream. Emits the result rows in chunks.
+ * A chunk is acknowledged to the DatabaseService only while the stream is not paused,
+ * so no more than one chunk is held in memory per stream. Acknowledgements are sent to the control address without a reply,
+ * so the stream may stay paused as long as its reader needs.
+ * @author Vincent Bohlen, vincent.bohlen@fokus.fraunhofer.de
+ */
+public class RowStream implements ReadStream<JsonArray> {
+
+    public static final int DEFAULT_CHUNK_SIZE = 500;
+
+    // the kind of a message to the consumer, sent as header
+    static final String TYPE = "rowStream";
+    static final String ROWS = "rows";
+    static final String END = "end";
+    static final String ERROR = "error";
+
+    // the messages to the control address of the producer
+    static final String ACK = "ack";
+    static final String CANCEL = "cancel";
+
+    private Logger LOGGER = LoggerFactory.getLogger(RowStream.class.getName());
+
+    private Vertx vertx;
+    private String controlAddress;
+    private MessageConsumer<JsonArray> consumer;
+    private Handler<JsonArray> handler;
+    private Handler<Throwable> exceptionHandler;
+    private Handler<Void> endHandler;
+    private JsonArray pending;
+    private boolean unacknowledged;
+    private boolean paused;
+    private boolean ended;
+    private boolean closed;
+    private Throwable failure;
+
+    public RowStream(Vertx vertx, DatabaseService dbService, String query, JsonArray params, int chunkSize) {
+        String address = Constants.DATABASE_SERVICE + ".stream." + UUID.randomUUID().toString();
+        this.vertx = vertx;
+        this.controlAddress = controlAddress(address);
+        this.consumer = vertx.eventBus().consumer(address, this::onMessage);
+        this.consumer.completionHandler(registered -> {
+            if (registered.succeeded()) {
+                dbService.queryStream(query, params, chunkSize, address, reply -> {
+                    if (reply.failed() && !closed && !ended && failure == null) {
+                        LOGGER.error(reply.cause());
+                        // the cursor may still be declared after the reply timed out
+                        vertx.eventBus().send(controlAddress, CANCEL);
+                        consumer.unregister();
+                        failure = reply.cause();
+                        checkEnd();
+                    }
+                });
+            } else {
+                LOGGER.error(registered.cause());
+                failure = registered.cause();
+                checkEnd();
+            }
+        });
+    }
+
+    static String controlAddress(String address) {
+        return address + ".control";
+    }
+
+    static DeliveryOptions deliveryOptions(String type) {
+        return new DeliveryOptions().setCodecName(Codecs.JSON_ARRAY).addHeader(TYPE, type);
+    }
+
+    private void onMessage(Message<JsonArray> message) {
+        String type = message.headers().get(TYPE);
+        if (END.equals(type)) {
+            consumer.unregister();
+            ended = true;
+            checkEnd();
+        } else if (ERROR.equals(type)) {
+            consumer.unregister();
+            failure = new IllegalStateException(message.body().getString(0));
+            checkEnd();
+        } else {
+            // confirms the receipt only, the chunk is acknowledged on the control address once it was handed on
+            message.reply(true);
+            if (!closed) {
+                pending = message.body();
+                checkPending();
+            }
+        }
+    }
+
+    private void checkPending() {
+        if (paused || handler == null) {
+            return;
+        }
+        if (pending != null) {
+            JsonArray chunk = pending;
+            pending = null;
+            unacknowledged = true;
+            handler.handle(chunk);
+        }
+        if (!paused && unacknowledged) {
+            unacknowledged = false;
+            vertx.eventBus().send(controlAddress, ACK);
+        }
+    }
+    private void checkEnd() {
+        if (failure != null && exceptionHandler != null) {
+            Handler<Throwable> h = exceptionHandler;
+            exceptionHandler = null;
+            h.handle(failure);
+        } else if (ended && endHandler != null) {
+            Handler<Void> h = endHandler;
+            endHandler = null;
+            h.handle(null);
+        }
+    }
+
+    /**
+     * Stops the stream. The DatabaseService releases the cursor once it receives the cancellation.
+     */
+    public void close() {
+        if (!closed) {
+            closed = true;
+            handler = null;
+            pending = null;
+            if (!ended && failure == null) {
+                vertx.eventBus().send(controlAddress, CANCEL);
+            }
+            consumer.unregister();
+        }
+    }
+
+    @Override
+    public RowStream exceptionHandler(Handler<Throwable> handler) {
+        this.exceptionHandler = handler;
+        checkEnd();
+        return this;
+    }
+
+    @Override
+    public RowStream handler(Handler<JsonArray> handler) {
+        this.handler = handler;
+        checkPending();
+        return this;
+    }
+
+    @Override
+    public RowStream pause() {
+        paused = true;
+        return this;
+    }
+
+    @Override
+    public RowStream resume() {
+        paused = false;
+        checkPending();
+        return this;
+    }
+
+    @Override
+    public RowStream fetch(long amount) {
+        return amount > 0 ? resume() : this;
+    }
+
+    @Override
+    public RowStream endHandler(Handler<Void> endHandler) {
+        this.endHandler = endHandler;
+        checkEnd();
+        return this;
+    }
+}
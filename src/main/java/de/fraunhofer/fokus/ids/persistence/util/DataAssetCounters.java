@@ -0,0 +1,119 @@
+package de.fraunhofer.fokus.ids.persistence.util;
+
+import de.fraunhofer.fokus.ids.models.Constants;
+import de.fraunhofer.fokus.ids.persistence.enums.DataAssetStatus;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.core.shareddata.LocalMap;
+
+/**
+ * Number of data assets in total and per status, shared by all instances within the Vert.x instance.
+ * The counters are seeded once from the database and afterwards maintained by the DataAssetManager on every successful write.
+ * Updates before seeding are dropped, the seed already contains them. Statuses unknown to DataAssetStatus are only counted in the total.
+ * @author Vincent Bohlen, vincent.bohlen@fokus.fraunhofer.de
+ */
+public class DataAssetCounters {
+
+    private Logger LOGGER = LoggerFactory.getLogger(DataAssetCounters.class.getName());
+
+    private static final String TOTAL = "total";
+    private static final DataAssetStatus[] STATUSES = DataAssetStatus.values();
+
+    private LocalMap<String, Long> counts;
+
+    public DataAssetCounters(Vertx vertx){
+        this.counts = vertx.sharedData().getLocalMap(Constants.DATA_ASSET_COUNTS);
+    }
+
+    public boolean isSeeded(){
+        return counts.get(TOTAL) != null;
+    }
+
+    /**
+     * @param rows result of a query grouped by status with the columns status and count
+     */
+    public void seed(JsonArray rows){
+        counts.clear();
+        long total = 0;
+        for(int i = 0; i < rows.size(); i++){
+            JsonObject row = rows.getJsonObject(i);
+            long count = row.getLong("count");
+            total += count;
+            String key = key(row.getInteger("status"));
+            if(key != null){
+                counts.put(key, count);
+            }
+        }
+        counts.put(TOTAL, total);
+    }
+
+    public void created(Integer status){
+        add(TOTAL, 1);
+        changed(null, status);
+    }
+
+    public void changed(Integer oldStatus, Integer newStatus){
+        String oldKey = key(oldStatus);
+        if(oldKey != null){
+            add(oldKey, -1);
+        }
+        String newKey = key(newStatus);
+        if(newKey != null){
+            add(newKey, 1);
+        }
+    }
+
+    public void deleted(Integer status){
+        changed(status, null);
+        add(TOTAL, -1);
+    }
+
+    /**
+     * @return JsonObject with the total and the count of every status
+     */
+    public JsonObject get(){
+        JsonObject statusCounts = new JsonObject();
+        for(DataAssetStatus status : DataAssetStatus.values()){
+            Long count = counts.get(status.name());
+            statusCounts.put(status.name(), count == null ? 0L : count);
+        }
+        Long total = counts.get(TOTAL);
+        return new JsonObject()
+                .put(TOTAL, total == null ? 0L : total)
+                .put("status", statusCounts);
+    }
+
+    /**
+     * @return the counter of the status, null if the status is null or not a DataAssetStatus
+     */
+    private String key(Integer status){
+        if(status == null){
+            return null;
+        }
+        if(status < 0 || status >= STATUSES.length){
+            LOGGER.warn("Data asset status " + status + " is unknown and not counted.");
+            return null;
+        }
+        return STATUSES[status].name();
+    }
+
+    private void add(String key, long delta){
+        if(!isSeeded()){
+            return;
+        }
+        while(true){
+            Long count = counts.get(key);
+            if(count == null){
+                if(counts.putIfAbsent(key, delta) == null){
+                    return;
+                }
+            }
+            else if(counts.replaceIfPresent(key, count, count + delta)){
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package de.fraunhofer.fokus.ids.persistence.util;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A page of entities read with a PageQuery.
+ * @author Vincent Bohlen, vincent.bohlen@fokus.fraunhofer.de
+ */
+public class Page<T> {
+
+    private final List<T> items;
+    private final Long next;
+    private final long total;
+    private final boolean totalExact;
+
+    public Page(List<T> items, Long next, long total, boolean totalExact){
+        this.items = items;
+        this.next = next;
+        this.total = total;
+        this.totalExact = totalExact;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * @return the cursor of the next page, null on the last page
+     */
+    public Long getNext() {
+        return next;
+    }
+
+    /**
+     * @return the total, counted up to PageQuery.COUNT_CAP
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    public boolean isTotalExact() {
+        return totalExact;
+    }
+
+    /**
+     * @param encoder converts an item to its JSON representation
+     * @return JsonObject in the format of PageQuery.toPage
+     */
+    public JsonObject toJson(Function<T, JsonObject> encoder){
+        JsonArray array = new JsonArray();
+        items.forEach(item -> array.add(encoder.apply(item)));
+        return new JsonObject()
+                .put("items", array)
+                .put("next", next)
+                .put("total", total)
+                .put("totalExact", totalExact);
+    }
+}
@@ -0,0 +1,113 @@
+package de.fraunhofer.fokus.ids.persistence.util;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds keyset paginated queries (ORDER BY id DESC, WHERE id < after) with optional equality filters.
+ * The total is counted over at most COUNT_CAP rows, so both statements stay cheap regardless of the table size.
+ * @author Vincent Bohlen, vincent.bohlen@fokus.fraunhofer.de
+ */
+public class PageQuery {
+
+    public static final int DEFAULT_LIMIT = 50;
+    public static final int MAX_LIMIT = 1000;
+    public static final int COUNT_CAP = 10000;
+
+    private final String table;
+    private final Map<String, Object> filters = new LinkedHashMap<>();
+    private Long after;
+    private int limit = DEFAULT_LIMIT;
+
+    public PageQuery(String table){
+        this.table = table;
+    }
+
+    /**
+     * Adds an equality filter. Null values are ignored.
+     * @param column column name, never user input
+     */
+    public PageQuery filter(String column, Object value){
+        if(value != null){
+            filters.put(column, value);
+        }
+        return this;
+    }
+
+    public PageQuery after(Long after){
+        this.after = after;
+        return this;
+    }
+
+    public PageQuery limit(int limit){
+        this.limit = limit < 1 ? DEFAULT_LIMIT : Math.min(limit, MAX_LIMIT);
+        return this;
+    }
+
+    /**
+     * @return the page query and the count query to be performed via DatabaseService.transaction
+     */
+    public List<JsonObject> statements(){
+        StringBuilder where = new StringBuilder();
+        JsonArray filterParams = new JsonArray();
+        for(Map.Entry<String, Object> filter : filters.entrySet()){
+            where.append(where.length() == 0 ? " WHERE " : " AND ").append(filter.getKey()).append(" = ?");
+            filterParams.add(filter.getValue());
+        }
+
+        StringBuilder pageWhere = new StringBuilder(where);
+        JsonArray pageParams = filterParams.copy();
+        if(after != null){
+            pageWhere.append(pageWhere.length() == 0 ? " WHERE " : " AND ").append("id < ?");
+            pageParams.add(after);
+        }
+        // one additional row tells whether a next page exists
+        pageParams.add(limit + 1);
+
+        return Arrays.asList(
+                Statements.query("SELECT * FROM " + table + pageWhere + " ORDER BY id DESC LIMIT ?", pageParams),
+                Statements.query("SELECT COUNT(*) AS total FROM (SELECT 1 FROM " + table + where + " LIMIT " + (COUNT_CAP + 1) + ") c", filterParams));
+    }
+
+    /**
+     * Creates the page object from the results of the statements.
+     * @return JsonObject with items, the cursor of the next page (null on the last page), the total and whether the total is exact
+     */
+    public JsonObject toPage(List<JsonArray> results){
+        JsonArray rows = results.get(0);
+        JsonArray items = new JsonArray();
+        for(int i = 0; i < Math.min(rows.size(), limit); i++){
+            items.add(rows.getJsonObject(i));
+        }
+        Long next = rows.size() > limit ? items.getJsonObject(items.size() - 1).getLong("id") : null;
+        long total = results.get(1).getJsonObject(0).getLong("total");
+
+        return new JsonObject()
+                .put("items", items)
+                .put("next", next)
+                .put("total", Math.min(total, COUNT_CAP))
+                .put("totalExact", total <= COUNT_CAP);
+    }
+
+    /**
+     * Creates the typed page from the results of the statements.
+     * @param mapper maps the rows of the page to entities
+     */
+    public <T> Page<T> toPage(List<JsonArray> results, RowMapper<T> mapper){
+        JsonArray rows = results.get(0);
+        List<T> items = new ArrayList<>(Math.min(rows.size(), limit));
+        for(int i = 0; i < Math.min(rows.size(), limit); i++){
+            items.add(mapper.map(rows.getJsonObject(i)));
+        }
+        Long next = rows.size() > limit ? rows.getJsonObject(limit - 1).getLong("id") : null;
+        long total = results.get(1).getJsonObject(0).getLong("total");
+
+        return new Page<>(items, next, Math.min(total, COUNT_CAP), total <= COUNT_CAP);
+    }
+}
@@ -0,0 +1,48 @@
+package de.fraunhofer.fokus.ids.persistence.util;
+
+import com.fasterxml.jackson.databind.JavaType;
+import de.fraunhofer.fokus.ids.models.Broker;
+import de.fraunhofer.fokus.ids.persistence.entities.DataAsset;
+import de.fraunhofer.fokus.ids.persistence.entities.DataSource;
+import de.fraunhofer.fokus.ids.persistence.entities.Job;
+import de.fraunhofer.fokus.ids.persistence.entities.User;
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Maps result rows to entities. The row map is converted directly by Jackson, without encoding it to a String and parsing it again.
+ * The mappers are immutable and can be used from any thread.
+ * @author Vincent Bohlen, vincent.bohlen@fokus.fraunhofer.de
+ */
+public class RowMapper<T> {
+
+    public static final RowMapper<DataAsset> DATA_ASSET = new RowMapper<>(DataAsset.class);
+    public static final RowMapper<DataSource> DATA_SOURCE = new RowMapper<>(DataSource.class);
+    public static final RowMapper<Job> JOB = new RowMapper<>(Job.class);
+    public static final RowMapper<Broker> BROKER = new RowMapper<>(Broker.class);
+    public static final RowMapper<User> USER = new RowMapper<>(User.class);
+
+    private final JavaType type;
+
+    private RowMapper(Class<T> type){
+        this.type = Json.mapper.getTypeFactory().constructType(type);
+    }
+
+    /**
+     * @return the entity, or null if the row is null
+     */
+    public T map(JsonObject row){
+        return row == null ? null : Json.mapper.convertValue(row.getMap(), type);
+    }
+
+    public List<T> mapAll(List<JsonObject> rows){
+        List<T> entities = new ArrayList<>(rows.size());
+        for(JsonObject row : rows){
+            entities.add(map(row));
+        }
+        return entities;
+    }
+}
@@ -0,0 +1,42 @@
+package de.fraunhofer.fokus.ids.persistence.util;
+
+import de.fraunhofer.fokus.ids.persistence.service.DatabaseServiceImpl.ConnectionType;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.List;
+
+/**
+ * Factory for the statement objects accepted by DatabaseService.transaction
+ * @author Vincent Bohlen, vincent.bohlen@fokus.fraunhofer.de
+ */
+public class Statements {
+
+    public static JsonObject query(String query, JsonArray params){
+        return create(ConnectionType.QUERY, query, params);
+    }
+
+    /**
+     * A query that ends the transaction if it selects any row. The statements before it are committed,
+     * the statements after it are not performed, so the result list ends with the rows of the guard.
+     */
+    public static JsonObject guard(String query, JsonArray params){
+        return query(query, params).put("guard", true);
+    }
+
+    public static JsonObject update(String query, JsonArray params){
+        return create(ConnectionType.UPDATE, query, params);
+    }
+
+    public static JsonObject batch(String query, List<JsonArray> paramSets){
+        return create(ConnectionType.BATCH, query, new JsonArray(paramSets));
+    }
+
+    private static JsonObject create(ConnectionType type, String query, JsonArray params){
+        return new JsonObject()
+                .put("type", type.name())
+                .put("query", query)
+                .put("params", params);
+    }
+
+}
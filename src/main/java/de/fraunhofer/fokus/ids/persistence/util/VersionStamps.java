@@ -0,0 +1,112 @@
+package de.fraunhofer.fokus.ids.persistence.util;
+
+import de.fraunhofer.fokus.ids.models.Constants;
+import io.vertx.core.Vertx;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.SharedData;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Version counters per resource family, shared by all instances within the Vert.x instance.
+ * The managers bump the version of a family after every successful write, caches compare the versions they were built for.
+ * Bumps with a key additionally record the changed key in a bounded journal, so caches can apply single changes instead of rebuilding.
+ * The versions start at 0 with every start of the Vert.x instance, the epoch tells the instances apart, e.g. in HTTP entity tags.
+ * @author Vincent Bohlen, vincent.bohlen@fokus.fraunhofer.de
+ */
+public class VersionStamps {
+
+    public static final String DATA_ASSETS = "dataassets";
+    // bumped only by writes that change a published data asset or the set of published data assets
+    public static final String PUBLISHED = "published";
+    public static final String CONFIGURATION = "configuration";
+    public static final String DATA_SOURCES = "datasources";
+    public static final String BROKERS = "brokers";
+
+    public static final int JOURNAL_SIZE = 10000;
+
+    private SharedData sharedData;
+    private static final String EPOCH = "epoch";
+
+    private LocalMap<String, Long> versions;
+    private LocalMap<String, Long> modified;
+
+    public VersionStamps(Vertx vertx){
+        this.sharedData = vertx.sharedData();
+        this.versions = sharedData.getLocalMap(Constants.VERSION_STAMPS);
+        this.modified = sharedData.getLocalMap(Constants.VERSION_STAMPS + ".modified");
+        modified.putIfAbsent(EPOCH, System.currentTimeMillis());
+    }
+
+    /**
+     * @return the start time of the version counters in milliseconds
+     */
+    public long epoch(){
+        return modified.get(EPOCH);
+    }
+
+    /**
+     * @return the time of the last bump of the family in milliseconds, or the epoch if it was not bumped yet
+     */
+    public long lastModified(String family){
+        Long time = modified.get(family);
+        return time == null ? epoch() : time;
+    }
+
+    public long get(String family){
+        Long version = versions.get(family);
+        return version == null ? 0L : version;
+    }
+
+    public long bump(String family){
+        while(true){
+            Long version = versions.get(family);
+            if(version == null){
+                if(versions.putIfAbsent(family, 1L) == null){
+                    modified.put(family, System.currentTimeMillis());
+                    return 1L;
+                }
+            }
+            else if(versions.replaceIfPresent(family, version, version + 1)){
+                modified.put(family, System.currentTimeMillis());
+                return version + 1;
+            }
+        }
+    }
+
+    /**
+     * Bumps the version of the family and records the changed key for the new version.
+     */
+    public long bump(String family, Long key){
+        long version = bump(family);
+        LocalMap<Long, Long> journal = journal(family);
+        journal.put(version, key);
+        journal.remove(version - JOURNAL_SIZE);
+        return version;
+    }
+
+    /**
+     * @return the keys changed after version since up to and including version until,
+     * or null if the journal does not cover that range and the caller has to rebuild completely
+     */
+    public Set<Long> changes(String family, long since, long until){
+        if(until - since > JOURNAL_SIZE){
+            return null;
+        }
+        LocalMap<Long, Long> journal = journal(family);
+        Set<Long> keys = new LinkedHashSet<>();
+        for(long version = since + 1; version <= until; version++){
+            Long key = journal.get(version);
+            if(key == null){
+                return null;
+            }
+            keys.add(key);
+        }
+        return keys;
+    }
+
+    private LocalMap<Long, Long> journal(String family){
+        return sharedData.getLocalMap(Constants.VERSION_STAMPS + "." + family);
+    }
+}
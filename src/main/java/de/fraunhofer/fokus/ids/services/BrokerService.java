@@ -1,24 +1,20 @@
 package de.fraunhofer.fokus.ids.services;
 
+import de.fraunhofer.fokus.ids.codecs.InfomodelSerializer;
+import de.fraunhofer.fokus.ids.codecs.MultipartEncoder;
+import de.fraunhofer.fokus.ids.models.Broker;
 import de.fraunhofer.fokus.ids.persistence.managers.BrokerManager;
 import de.fraunhofer.iais.eis.*;
 import io.vertx.core.*;
-import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientRequest;
 import io.vertx.core.json.Json;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
-import io.vertx.ext.web.client.WebClient;
-import org.apache.http.entity.ContentType;
-import org.apache.http.entity.mime.MultipartEntityBuilder;
-import org.apache.http.entity.mime.content.ContentBody;
-import org.apache.http.entity.mime.content.StringBody;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
 import java.net.ConnectException;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 /**
@@ -30,12 +26,12 @@ public class BrokerService {
 
     private BrokerManager brokerManager;
     private IDSService idsService;
-    private WebClient webClient;
+    private HttpClient httpClient;
 
     public BrokerService(Vertx vertx){
         this.brokerManager = new BrokerManager(vertx);
         this.idsService = new IDSService(vertx);
-        this.webClient = WebClient.create(vertx);
+        this.httpClient = vertx.createHttpClient();
     }
 
     public void subscribe(String url, Handler<AsyncResult<Void>> resultHandler){
@@ -107,23 +103,22 @@ public class BrokerService {
         });
     }
 
-    private void sendMessage(Buffer buffer, List<URL> urls, Handler<AsyncResult<Void>> resultHandler){
-        if(buffer != null) {
+    private void sendMessage(MultipartEncoder message, List<URL> urls, Handler<AsyncResult<Void>> resultHandler){
+        if(message != null) {
             for (URL url : urls) {
                 final int port = url.getPort() == -1 ? 80 : url.getPort();
                 final String host = url.getHost();
                 final String path = url.getPath();
 
-                webClient
-                        .post(port, host, path)
-                        .sendBuffer(buffer, ar -> {
-                            if (ar.succeeded()) {
-                                resultHandler.handle(Future.succeededFuture());
-                            } else {
-                                LOGGER.error(ar.cause());
-                                resultHandler.handle(Future.failedFuture(ar.cause()));
-                            }
-                        });
+                // the chunks of the serialized connector are written one by one, the message is never joined into one buffer
+                HttpClientRequest request = httpClient.post(port, host, path, response -> resultHandler.handle(Future.succeededFuture()));
+                request.exceptionHandler(t -> {
+                    LOGGER.error(t);
+                    resultHandler.handle(Future.failedFuture(t));
+                });
+                request.putHeader("content-type", message.getContentType());
+                request.putHeader("content-length", String.valueOf(message.length()));
+                message.writeTo(request);
             }
         }
         else{
@@ -132,12 +127,12 @@ public class BrokerService {
     }
 
     private void getBrokerURLs(Handler<AsyncResult<List<URL>>> resultHandler){
-        brokerManager.findAll( reply -> {
+        brokerManager.findAllBrokers( reply -> {
             if (reply.succeeded()){
                 List<URL> brokerUrls = new ArrayList<>();
-                for(int i =0;i<reply.result().size();i++) {
+                for(Broker broker : reply.result()) {
                     try {
-                        brokerUrls.add(new URL(reply.result().getJsonObject(i).getString("url")));
+                        brokerUrls.add(new URL(broker.getUrl()));
                     } catch (MalformedURLException e) {
                         LOGGER.error(e);
                         resultHandler.handle(Future.succeededFuture(new ArrayList<>()));
@@ -151,22 +146,12 @@ public class BrokerService {
         });
     }
 
-   private Buffer createBrokerMessage(ConnectorNotificationMessage message, Connector connector){
-       ContentBody cb = new StringBody(Json.encodePrettily(message), org.apache.http.entity.ContentType.create("application/json"));
-       ContentBody result = new StringBody(Json.encodePrettily(connector), org.apache.http.entity.ContentType.create("application/json"));
-
-       MultipartEntityBuilder multipartEntityBuilder = MultipartEntityBuilder.create()
-               .setBoundary("IDSMSGPART")
-               .setCharset(StandardCharsets.UTF_8)
-               .setContentType(ContentType.APPLICATION_JSON)
-               .addPart("header", cb)
-               .addPart("payload", result);
-
-       ByteArrayOutputStream out = new ByteArrayOutputStream();
+   private MultipartEncoder createBrokerMessage(ConnectorNotificationMessage message, Connector connector){
        try {
-           multipartEntityBuilder.build().writeTo(out);
-           return Buffer.buffer().appendString(out.toString());
-       } catch (IOException e) {
+           return new MultipartEncoder()
+                   .addPart("header", MultipartEncoder.JSON, Json.encodePrettily(message))
+                   .addPart("payload", MultipartEncoder.JSON, InfomodelSerializer.serialize(connector, false));
+       } catch (Exception e) {
            LOGGER.error(e);
        }
        return null;
@@ -0,0 +1,210 @@
+package de.fraunhofer.fokus.ids.services;
+
+import de.fraunhofer.fokus.ids.models.Constants;
+import de.fraunhofer.fokus.ids.persistence.entities.DataAsset;
+import de.fraunhofer.fokus.ids.persistence.managers.DataAssetManager;
+import de.fraunhofer.fokus.ids.persistence.util.VersionStamps;
+import de.fraunhofer.iais.eis.Resource;
+import io.vertx.core.*;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Keeps the offer resources of the published data assets, keyed by asset id and updated_at.
+ * After the first complete build only the assets recorded as changed in the data asset journal are reloaded in chunks and their entries added, replaced or removed.
+ * A configuration change, a gap in the journal or more than MAX_REFRESH changed assets lead to a complete rebuild.
+ * Complete rebuilds run in partitions of PARTITION_SIZE assets in parallel on the bounded catalog worker pool, never on the event loop,
+ * so the resource factory must be thread safe.
+ * Instances are not thread safe and must be used from a single context.
+ * @author Vincent Bohlen, vincent.bohlen@fokus.fraunhofer.de
+ */
+public class CatalogCache {
+
+	private final Logger LOGGER = LoggerFactory.getLogger(CatalogCache.class.getName());
+
+	public static final int PARTITION_SIZE = 500;
+	// above this number of changed assets, e.g. after a bulk publish, a complete rebuild is cheaper than the refresh
+	public static final int MAX_REFRESH = 500;
+	public static final int REFRESH_CHUNK_SIZE = 100;
+
+	private DataAssetManager dataAssetManager;
+	private WorkerExecutor workerExecutor;
+	private VersionStamps versionStamps;
+
+	private TreeMap<Long, Resource> resources;
+	private Map<Long, Object> updatedAts;
+	private long dataAssetsVersion;
+	private long configurationVersion;
+	private List<Handler<AsyncResult<Collection<Resource>>>> waiting;
+
+	public CatalogCache(Vertx vertx, DataAssetManager dataAssetManager){
+		this.dataAssetManager = dataAssetManager;
+		this.versionStamps = new VersionStamps(vertx);
+		this.workerExecutor = vertx.createSharedWorkerExecutor(Constants.CATALOG_WORKER_POOL, Constants.CATALOG_WORKER_POOL_SIZE);
+	}
+
+	/**
+	 * @param resourceFactory builds the resource of a data asset, returns null if the asset cannot be described
+	 * @param resultHandler receives an unmodifiable view of the resources ordered by asset id. The view follows later updates of the cache,
+	 *                      so it has to be copied if it is used after the handler returns
+	 */
+	public void getResources(Function<DataAsset, Resource> resourceFactory, Handler<AsyncResult<Collection<Resource>>> resultHandler){
+		if(waiting != null){
+			waiting.add(resultHandler);
+			return;
+		}
+		long assetsVersion = versionStamps.get(VersionStamps.DATA_ASSETS);
+		long configVersion = versionStamps.get(VersionStamps.CONFIGURATION);
+		if(resources != null && configVersion == configurationVersion && assetsVersion == dataAssetsVersion){
+			resultHandler.handle(Future.succeededFuture(values()));
+			return;
+		}
+
+		waiting = new ArrayList<>();
+		waiting.add(resultHandler);
+		Handler<AsyncResult<Void>> done = reply -> {
+			List<Handler<AsyncResult<Collection<Resource>>>> handlers = waiting;
+			waiting = null;
+			if(reply.succeeded()){
+				// stored with the versions read before loading, a write during the load is applied by the next call
+				dataAssetsVersion = assetsVersion;
+				configurationVersion = configVersion;
+				Collection<Resource> result = values();
+				handlers.forEach(h -> h.handle(Future.succeededFuture(result)));
+			}
+			else{
+				LOGGER.error(reply.cause());
+				handlers.forEach(h -> h.handle(Future.failedFuture(reply.cause())));
+			}
+		};
+
+		Set<Long> changes = resources == null || configVersion != configurationVersion ? null
+				: versionStamps.changes(VersionStamps.DATA_ASSETS, dataAssetsVersion, assetsVersion);
+		if(changes == null || changes.size() > MAX_REFRESH){
+			load(resourceFactory, done);
+		}
+		else{
+			refresh(changes, resourceFactory, done);
+		}
+	}
+
+	private void load(Function<DataAsset, Resource> resourceFactory, Handler<AsyncResult<Void>> next){
+		dataAssetManager.findPublished(reply -> {
+			if(reply.succeeded()){
+				List<DataAsset> dataAssets = reply.result();
+				List<Future<Map<Long, CachedResource>>> partitions = new ArrayList<>();
+				for(int start = 0; start < dataAssets.size(); start += PARTITION_SIZE){
+					List<DataAsset> slice = dataAssets.subList(start, Math.min(start + PARTITION_SIZE, dataAssets.size()));
+					Future<Map<Long, CachedResource>> partition = Future.future();
+					partitions.add(partition);
+					workerExecutor.executeBlocking(f -> f.complete(buildPartition(slice, resourceFactory)), false, partition.completer());
+				}
+				CompositeFuture.all(new ArrayList<>(partitions)).setHandler(ar -> {
+					if(ar.succeeded()){
+						TreeMap<Long, Resource> loaded = new TreeMap<>();
+						Map<Long, Object> loadedUpdatedAts = new HashMap<>();
+						for(Future<Map<Long, CachedResource>> partition : partitions){
+							partition.result().forEach((id, cached) -> {
+								loaded.put(id, cached.resource);
+								loadedUpdatedAts.put(id, cached.updatedAt);
+							});
+						}
+						resources = loaded;
+						updatedAts = loadedUpdatedAts;
+						next.handle(Future.succeededFuture());
+					}
+					else{
+						next.handle(Future.failedFuture(ar.cause()));
+					}
+				});
+			}
+			else{
+				next.handle(Future.failedFuture(reply.cause()));
+			}
+		});
+	}
+
+	private Map<Long, CachedResource> buildPartition(List<DataAsset> dataAssets, Function<DataAsset, Resource> resourceFactory){
+		Map<Long, CachedResource> partition = new HashMap<>();
+		for(DataAsset dataAsset : dataAssets){
+			CachedResource cached = build(dataAsset, resourceFactory);
+			if(cached != null){
+				partition.put(dataAsset.getId(), cached);
+			}
+		}
+		return partition;
+	}
+
+	private void refresh(Set<Long> ids, Function<DataAsset, Resource> resourceFactory, Handler<AsyncResult<Void>> next){
+		refresh(new ArrayList<>(ids), 0, resourceFactory, next);
+	}
+
+	/**
+	 * Reloads the changed assets in chunks of REFRESH_CHUNK_SIZE ids, one query after the other.
+	 * @param start index of the first id of the next chunk
+	 */
+	private void refresh(List<Long> ids, int start, Function<DataAsset, Resource> resourceFactory, Handler<AsyncResult<Void>> next){
+		if(start >= ids.size()){
+			next.handle(Future.succeededFuture());
+			return;
+		}
+		List<Long> chunk = ids.subList(start, Math.min(start + REFRESH_CHUNK_SIZE, ids.size()));
+		dataAssetManager.findPublishedByIds(chunk, reply -> {
+			if(reply.succeeded()){
+				Map<Long, DataAsset> dataAssets = new HashMap<>();
+				for(DataAsset dataAsset : reply.result()){
+					dataAssets.put(dataAsset.getId(), dataAsset);
+				}
+				// ids without a row are deleted or no longer published
+				chunk.forEach(id -> apply(id, dataAssets.get(id), resourceFactory));
+				refresh(ids, start + REFRESH_CHUNK_SIZE, resourceFactory, next);
+			}
+			else{
+				// the journal position is not advanced, so the whole change set is reloaded by the next call
+				next.handle(Future.failedFuture(reply.cause()));
+			}
+		});
+	}
+
+	private void apply(Long id, DataAsset dataAsset, Function<DataAsset, Resource> resourceFactory){
+		if(dataAsset == null){
+			resources.remove(id);
+			updatedAts.remove(id);
+			return;
+		}
+		if(resources.containsKey(id) && Objects.equals(updatedAts.get(id), dataAsset.getUpdatedAt())){
+			return;
+		}
+		CachedResource cached = build(dataAsset, resourceFactory);
+		if(cached != null){
+			resources.put(id, cached.resource);
+			updatedAts.put(id, cached.updatedAt);
+		}
+		else{
+			resources.remove(id);
+			updatedAts.remove(id);
+		}
+	}
+
+	private CachedResource build(DataAsset dataAsset, Function<DataAsset, Resource> resourceFactory){
+		Resource resource = resourceFactory.apply(dataAsset);
+		return resource == null ? null : new CachedResource(dataAsset.getUpdatedAt(), resource);
+	}
+
+	private Collection<Resource> values(){
+		return Collections.unmodifiableCollection(resources.values());
+	}
+
+	private static class CachedResource {
+		private final Object updatedAt;
+		private final Resource resource;
+
+		private CachedResource(Object updatedAt, Resource resource){
+			this.updatedAt = updatedAt;
+			this.resource = resource;
+		}
+	}
+}
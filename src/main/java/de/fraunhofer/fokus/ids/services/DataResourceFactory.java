@@ -0,0 +1,173 @@
+package de.fraunhofer.fokus.ids.services;
+
+import de.fraunhofer.fokus.ids.persistence.entities.DataAsset;
+import de.fraunhofer.iais.eis.*;
+import de.fraunhofer.iais.eis.util.PlainLiteral;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import javax.xml.datatype.DatatypeConfigurationException;
+import javax.xml.datatype.DatatypeFactory;
+import javax.xml.datatype.XMLGregorianCalendar;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.time.ZoneId;
+import java.util.*;
+
+/**
+ * Builds the DataResources of the catalog. The connector level objects are created once per connector url,
+ * so a factory is kept per configuration version by the IDSService.
+ * Immutable once created, so it can be used by the catalog workers concurrently.
+ * @author Vincent Bohlen, vincent.bohlen@fokus.fraunhofer.de
+ */
+public class DataResourceFactory {
+	private final Logger LOGGER = LoggerFactory.getLogger(DataResourceFactory.class.getName());
+
+	// the service loader lookup of DatatypeFactory.newInstance is done once, the factory itself keeps no state
+	static final DatatypeFactory DATATYPE_FACTORY = createDatatypeFactory();
+
+	private final URI dataResourceId;
+	private final URI resourceEndpointId;
+	private final URI artifactId;
+	private final URI sovereignId;
+	private final Host host;
+	private final Agent publisher;
+
+	/**
+	 * @param url the url of the connector configuration
+	 */
+	public DataResourceFactory(String url) throws URISyntaxException {
+		this.dataResourceId = new URI(url + "#DataResource");
+		this.resourceEndpointId = new URI(url + "#ResourceEndpoint");
+		this.artifactId = new URI(url + "#Artifact");
+		this.sovereignId = new URI(url + "#Sovereign");
+		this.host = new HostBuilder(new URI(url + "#Host"))
+				._accessUrl_(new URI(url))
+				._pathPrefix_("/")
+				._protocol_(Protocol.HTTP)
+				.build();
+		this.publisher = getAgent(new URI(url + "#Publisher"), "", "");
+	}
+
+	private static DatatypeFactory createDatatypeFactory(){
+		try {
+			return DatatypeFactory.newInstance();
+		} catch (DatatypeConfigurationException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * @return the DataResource of the data asset, or null if it could not be built
+	 */
+	public Resource create(DataAsset da) {
+		try {
+			DataResourceBuilder r = new DataResourceBuilder(dataResourceId)
+					//						//TODO: The regular period with which items are added to a collection.
+					//						._accrualPeriodicity_(null)
+					//						//TODO: Reference to a Digital Content (physically or logically) included, definition of part-whole hierarchies.
+					//						._contentParts_(null)
+					//						//TODO: Constraint that refines a (composite) Digital Content.
+					//						._contentRefinements_(null)
+					//						//TODO: Standards document defining the given Digital Content. The content is assumed to conform to that Standard.
+					//						._contentStandard_(null)
+					//						//TODO: Enumerated types of content expanding upon the Digital Content hierarchy.
+					//						._contentType_(null)
+					//						//TODO: Reference to a Contract Offer defining the authorized use of the Resource.
+					//						._contractOffers_(null)
+					//						//TODO: Default representation of the content.
+					//						._defaultRepresentation_(null)
+					//						//TODO: Natural language(s) used within the content
+					//						._languages_(null)
+					//						//TODO: Something that occurs over a period of time and acts upon or with entities.
+					//						._lifecycleActivities_(null)
+					//						//TODO: Representation of the content.
+					//						._representations_(null)
+					//						//TODO: Reference to the Interface defining Operations supported by the Resource.
+					//						._resourceInterface_(null)
+					//						//TODO: Reference to a Resource (physically or logically) included, definition of part-whole hierarchies.
+					//						._resourceParts_(null)
+					//						//TODO: Sample Resource instance.
+					//						._samples_(null)
+					//						//TODO: Named spatial entity covered by the Resource.
+					//						._spatialCoverages_(null)
+					//						//TODO: Reference to a well-known License regulating the general usage of the Resource.
+					//						._standardLicense_(null)
+					//						//TODO: Temporal period or instance covered by the content.
+					//						._temporalCoverages_(null)
+					//						//TODO: Abstract or concrete concept related to or referred by the content.
+					//						._themes_(null)
+					//						//TODO: (Equivalent) variant of given Resource, e.g. a translation.
+					//						._variant_(null)
+
+					._version_(da.getVersion())
+					._resourceEndpoint_(getResourceEndpoint(da))
+					._publisher_(publisher)
+					._sovereign_(getAgent(sovereignId, da.getOrganizationDescription(), da.getOrganizationTitle()));
+			if (da.getDatasetTitle() != null) {
+				r._title_(new ArrayList<>(Arrays.asList(new PlainLiteral(da.getDatasetTitle()))));
+			}
+			if (da.getDataSetDescription() != null) {
+				r._description_(new ArrayList<>(Arrays.asList(new PlainLiteral(da.getDataSetDescription()))));
+			}
+			ArrayList<PlainLiteral> keywords = getKeyWords(da);
+			if (keywords != null) {
+				r._keyword_(keywords);
+			}
+			if (da.getLicenseUrl() != null) {
+				r._customLicense_(new URI(da.getLicenseUrl()));
+			}
+
+			return r.build();
+		} catch (Exception e) {
+			LOGGER.error( e);
+		}
+		return null;
+	}
+
+	private ArrayList<? extends Endpoint> getResourceEndpoint(DataAsset da) {
+		ArrayList<Endpoint> endpoints = new ArrayList<>();
+		Endpoint e;
+		try {
+			e = new StaticEndpointBuilder(resourceEndpointId)
+					._endpointArtifact_(new ArtifactBuilder(artifactId)
+							._creationDate_(getDate(da.getCreatedAt()))
+							._fileName_(da.getId().toString())
+							.build())
+					._endpointHost_(host)
+					._path_("/data/")
+					.build();
+			endpoints.add(e);
+		} catch (Exception e1) {
+			LOGGER.error(e1);
+		}
+		return endpoints;
+	}
+
+	private XMLGregorianCalendar getDate(Date createdAt) {
+		if (createdAt == null) {
+			return null;
+		}
+		return DATATYPE_FACTORY.newXMLGregorianCalendar(GregorianCalendar.from(createdAt.toInstant().atZone(ZoneId.systemDefault())));
+	}
+
+	private static Agent getAgent(URI agentId, String agentDescription , String agentTitle) {
+		PlainLiteral desc = agentDescription != null ? new PlainLiteral(agentDescription) : null;
+		PlainLiteral title = agentTitle != null ? new PlainLiteral(agentTitle) : null;
+		return new AgentBuilder(agentId)
+				._description_(new ArrayList<>(Arrays.asList(desc)))
+				._title_(new ArrayList<>(Arrays.asList(title)))
+				.build();
+	}
+
+	private ArrayList<PlainLiteral> getKeyWords(DataAsset da) {
+		if (da.getTags() == null || da.getTags().isEmpty()) {
+			return null;
+		}
+		ArrayList<PlainLiteral> keywords = new ArrayList<>(da.getTags().size());
+		for (String tag : da.getTags()) {
+			keywords.add(new PlainLiteral(tag));
+		}
+		return keywords;
+	}
+}
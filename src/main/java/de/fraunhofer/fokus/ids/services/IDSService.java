@@ -2,25 +2,25 @@ package de.fraunhofer.fokus.ids.services;
 
 import de.fraunhofer.fokus.ids.models.Constants;
 import de.fraunhofer.fokus.ids.persistence.entities.DataAsset;
+import de.fraunhofer.fokus.ids.persistence.managers.ConfigManager;
 import de.fraunhofer.fokus.ids.persistence.managers.DataAssetManager;
-import de.fraunhofer.fokus.ids.persistence.service.DatabaseService;
+import de.fraunhofer.fokus.ids.persistence.util.PageQuery;
+import de.fraunhofer.fokus.ids.persistence.util.VersionStamps;
 import de.fraunhofer.iais.eis.*;
 import de.fraunhofer.iais.eis.util.PlainLiteral;
 import io.vertx.core.*;
-import io.vertx.core.json.Json;
-import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
+import io.vertx.core.shareddata.LocalMap;
 
-import javax.xml.datatype.DatatypeConfigurationException;
-import javax.xml.datatype.DatatypeFactory;
 import javax.xml.datatype.XMLGregorianCalendar;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
-import java.util.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.GregorianCalendar;
 import java.util.List;
 /**
  * @author Vincent Bohlen, vincent.bohlen@fokus.fraunhofer.de
@@ -30,12 +30,23 @@ public class IDSService {
 
 	private String INFO_MODEL_VERSION = "2.0.0";
 	private String[] SUPPORTED_INFO_MODEL_VERSIONS = {"2.0.0"};
+
 	private DataAssetManager dataAssetManager;
-	private DatabaseService databaseService;
+	private ConfigManager configManager;
+	private CatalogCache catalogCache;
+	private VersionStamps versionStamps;
+	private WorkerExecutor workerExecutor;
+	private LocalMap<String, Integer> settings;
+	private DataResourceFactory dataResourceFactory;
+	private long dataResourceFactoryVersion = -1;
 
 	public IDSService(Vertx vertx){
 		dataAssetManager = new DataAssetManager(vertx);
-		databaseService = DatabaseService.createProxy(vertx, Constants.DATABASE_SERVICE);
+		configManager = new ConfigManager(vertx);
+		catalogCache = new CatalogCache(vertx, dataAssetManager);
+		versionStamps = new VersionStamps(vertx);
+		workerExecutor = vertx.createSharedWorkerExecutor(Constants.CATALOG_WORKER_POOL, Constants.CATALOG_WORKER_POOL_SIZE);
+		settings = vertx.sharedData().getLocalMap(Constants.SETTINGS);
 	}
 
 	public void getSelfDescriptionResponse(Handler<AsyncResult<SelfDescriptionResponse>> resultHandler) {
@@ -50,14 +61,7 @@ public class IDSService {
 	}
 
 	private XMLGregorianCalendar getDate(){
-		GregorianCalendar c = new GregorianCalendar();
-		c.setTime(new Date());
-		try {
-			return DatatypeFactory.newInstance().newXMLGregorianCalendar(c);
-		} catch (DatatypeConfigurationException e) {
-			LOGGER.error(e);
-		}
-		return null;
+		return DataResourceFactory.DATATYPE_FACTORY.newXMLGregorianCalendar(new GregorianCalendar());
 	}
 
 	public void createRegistrationMessage(Handler<AsyncResult<ConnectorAvailableMessage>> resultHandler){
@@ -158,6 +162,66 @@ public class IDSService {
 		});
 	}
 
+	/**
+	 * Builds a page of the catalog in paged catalog mode. The catalog of the self-description is the first page.
+	 * @param after the page starts after this data asset id, null for the first page
+	 */
+	public void getCatalogPage(Long after, Handler<AsyncResult<Catalog>> resultHandler) {
+		if(getCatalogPageSize() == 0){
+			resultHandler.handle(Future.failedFuture("The catalog is not paged."));
+			return;
+		}
+		getConfiguration(configReply -> {
+			if(configReply.succeeded()) {
+				Future<Collection<Resource>> offers = getOfferPage(configReply.result(), after);
+				buildCatalog(configReply.result(), pageUrl(configReply.result(), after), offers).setHandler(resultHandler);
+			}
+			else{
+				LOGGER.error("Configuration could not be retrieved.");
+				resultHandler.handle(Future.failedFuture(configReply.cause()));
+			}
+		});
+	}
+
+	/**
+	 * The pages are addressed by the last data asset id of the previous page, so a page and its links are read with bounded keyset queries.
+	 * @param after the page starts after this data asset id, null for the first page, which is the self-description
+	 * @param resultHandler receives the RFC 8288 links (first, next) of the catalog page, empty if the catalog is not paged
+	 */
+	public void getCatalogLinks(Long after, Handler<AsyncResult<List<String>>> resultHandler) {
+		int pageSize = getCatalogPageSize();
+		if(pageSize == 0){
+			resultHandler.handle(Future.succeededFuture(new ArrayList<>()));
+			return;
+		}
+		getConfiguration(configReply -> {
+			if(configReply.succeeded()) {
+				// one id more than the page tells whether there is a next page
+				dataAssetManager.findPublishedIdsAfter(after == null ? 0L : after, pageSize + 1, reply -> {
+					if(reply.succeeded()) {
+						List<String> links = new ArrayList<>();
+						links.add("<" + pageUrl(configReply.result(), null) + ">; rel=\"first\"");
+						if(reply.result().size() > pageSize) {
+							links.add("<" + pageUrl(configReply.result(), reply.result().get(pageSize - 1)) + ">; rel=\"next\"");
+						}
+						resultHandler.handle(Future.succeededFuture(links));
+					}
+					else {
+						resultHandler.handle(Future.failedFuture(reply.cause()));
+					}
+				});
+			}
+			else{
+				LOGGER.error("Configuration could not be retrieved.");
+				resultHandler.handle(Future.failedFuture(configReply.cause()));
+			}
+		});
+	}
+
+	private String pageUrl(JsonObject config, Long after) {
+		return config.getString("url") + "/about/catalog" + (after == null ? "" : "?after=" + after);
+	}
+
 	private SelfDescriptionResponse buildSelfDescriptionResponse(JsonObject config){
 
 		try {
@@ -221,15 +285,19 @@ public class IDSService {
 	}
 
 	private Future<Catalog> buildCatalog(JsonObject config) {
+		Future<Collection<Resource>> offers = getCatalogPageSize() == 0 ? getOfferResources(config) : getOfferPage(config, null);
+		return buildCatalog(config, config.getString("url") + "#Catalog", offers);
+	}
+
+	private Future<Catalog> buildCatalog(JsonObject config, String catalogId, Future<Collection<Resource>> offers) {
 
-		Future<List<Resource>> offers = getOfferResources(config);
 		Future<List<Resource>> requests = getRequestResources(config);
 		Future<Catalog> catalog = Future.future();
 
 		CompositeFuture.all(offers, requests).setHandler(cf -> {
 			if(cf.succeeded()) {
 				try {
-					catalog.complete(new CatalogBuilder(new URI(config.getString("url") + "#Catalog"))
+					catalog.complete(new CatalogBuilder(new URI(catalogId))
 							._offer_(new ArrayList(offers.result()))
 							._request_(new ArrayList(requests.result()))
 							.build());
@@ -251,182 +319,79 @@ public class IDSService {
 		return Future.succeededFuture(new ArrayList<>());
 	}
 
-	private Future<List<Resource>> getOfferResources(JsonObject config) {
-		Future<List<Resource>> daFuture = Future.future();
-		findPublished(daList -> createDataResources(config, daList, daFuture));
-		return daFuture;
-	}
-
-	private void createDataResources( JsonObject config, AsyncResult<List<DataAsset>> daList, Future<List<Resource>> daFuture) {
-		if(daList.succeeded()) {
-			List<DataAsset> das = daList.result();
-			ArrayList<Resource> offerResources = new ArrayList<>();
-			for (DataAsset da : das) {
-				try {
-					DataResourceBuilder r = new DataResourceBuilder(new URI(config.getString("url") + "#DataResource"))
-							//						//TODO: The regular period with which items are added to a collection.
-							//						._accrualPeriodicity_(null)
-							//						//TODO: Reference to a Digital Content (physically or logically) included, definition of part-whole hierarchies.
-							//						._contentParts_(null)
-							//						//TODO: Constraint that refines a (composite) Digital Content.
-							//						._contentRefinements_(null)
-							//						//TODO: Standards document defining the given Digital Content. The content is assumed to conform to that Standard.
-							//						._contentStandard_(null)
-							//						//TODO: Enumerated types of content expanding upon the Digital Content hierarchy.
-							//						._contentType_(null)
-							//						//TODO: Reference to a Contract Offer defining the authorized use of the Resource.
-							//						._contractOffers_(null)
-							//						//TODO: Default representation of the content.
-							//						._defaultRepresentation_(null)
-							//						//TODO: Natural language(s) used within the content
-							//						._languages_(null)
-							//						//TODO: Something that occurs over a period of time and acts upon or with entities.
-							//						._lifecycleActivities_(null)
-							//						//TODO: Representation of the content.
-							//						._representations_(null)
-							//						//TODO: Reference to the Interface defining Operations supported by the Resource.
-							//						._resourceInterface_(null)
-							//						//TODO: Reference to a Resource (physically or logically) included, definition of part-whole hierarchies.
-							//						._resourceParts_(null)
-							//						//TODO: Sample Resource instance.
-							//						._samples_(null)
-							//						//TODO: Named spatial entity covered by the Resource.
-							//						._spatialCoverages_(null)
-							//						//TODO: Reference to a well-known License regulating the general usage of the Resource.
-							//						._standardLicense_(null)
-							//						//TODO: Temporal period or instance covered by the content.
-							//						._temporalCoverages_(null)
-							//						//TODO: Abstract or concrete concept related to or referred by the content.
-							//						._themes_(null)
-							//						//TODO: (Equivalent) variant of given Resource, e.g. a translation.
-							//						._variant_(null)
-
-							._version_(da.getVersion())
-							._resourceEndpoint_(getResourceEndpoint(config, da))
-							._publisher_(getAgent(config, "Publisher", "", ""))
-							._sovereign_(getAgent(config, "Sovereign", da.getOrganizationDescription(), da.getOrganizationTitle()));
-					if (da.getDatasetTitle() != null) {
-						r._title_(new ArrayList<>(Arrays.asList(new PlainLiteral(da.getDatasetTitle()))));
-					}
-					if (da.getDataSetDescription() != null) {
-						r._description_(new ArrayList<>(Arrays.asList(new PlainLiteral(da.getDataSetDescription()))));
-					}
-					ArrayList<PlainLiteral> keywords = getKeyWords(da);
-					if (keywords != null) {
-						r._keyword_(getKeyWords(da));
-					}
-					if (da.getLicenseUrl() != null) {
-						r._customLicense_(new URI(da.getLicenseUrl()));
-					}
-
-					offerResources.add(r.build());
-				} catch (Exception e) {
-					LOGGER.error( e);
-				}
-			}
-			daFuture.complete(offerResources);
-		}
-	}
-
-	private void findPublished(Handler<AsyncResult<List<DataAsset>>> next) {
-
-		dataAssetManager.findPublished(reply -> {
-			if(reply.succeeded()) {
-
-				JsonArray array = new JsonArray(reply.result().toString());
-				List<DataAsset> assets = new ArrayList<>();
-				for(int i=0;i<array.size();i++){
-					assets.add(Json.decodeValue(array.getJsonObject(i).toString(), DataAsset.class));
-				}
-				next.handle(Future.succeededFuture(assets));
-			}
-			else{
-				LOGGER.error(reply.cause());
-				next.handle(Future.succeededFuture(new ArrayList<>()));
-			}
-		});
-	}
-
-	private ArrayList<? extends Endpoint> getResourceEndpoint(JsonObject config, DataAsset da) {
-		ArrayList<Endpoint> endpoints = new ArrayList<>();
-		Endpoint e;
-		try {
-			e = new StaticEndpointBuilder(new URI(config.getString("url")+"#ResourceEndpoint"))
-					._endpointArtifact_(new ArtifactBuilder(new URI(config.getString("url")+"#Artifact"))
-							._creationDate_(getDate(da.getCreatedAt()))
-							._fileName_(da.getId().toString())
-							.build())
-					._endpointHost_(new HostBuilder(new URI(config.getString("url")+"#Host"))
-							._accessUrl_(new URI(config.getString("url")))
-							._pathPrefix_("/")
-							._protocol_(Protocol.HTTP)
-							.build())
-					._path_("/data/")
-					.build();
-			endpoints.add(e);
-		} catch (Exception e1) {
-			LOGGER.error(e1);
-		}
-		return endpoints;
-	}
-
-	private XMLGregorianCalendar getDate(Date createdAt) {
+	private Future<Collection<Resource>> getOfferResources(JsonObject config) {
+		Future<Collection<Resource>> daFuture = Future.future();
+		DataResourceFactory factory;
 		try {
-			DateFormat format = new SimpleDateFormat("YYYY-MM-dd'T'HH:mm:ss.SSSSSS");
-			String date = format.format(createdAt);
-
-			GregorianCalendar cal = new GregorianCalendar();
-			cal.setTime(format.parse(date));
-
-			return  DatatypeFactory.newInstance().newXMLGregorianCalendar(cal);
+			factory = getDataResourceFactory(config);
 		} catch (Exception e) {
 			LOGGER.error(e);
+			daFuture.fail(e);
+			return daFuture;
 		}
-		return null;
+		catalogCache.getResources(factory::create, daFuture.completer());
+		return daFuture;
 	}
 
-	private Agent getAgent(JsonObject config, String agentRole, String agentDescription , String agentTitle) {
-		Agent agent = null;
-		PlainLiteral desc = agentDescription != null ? new PlainLiteral(agentDescription) : null;
-		PlainLiteral title = agentTitle != null ? new PlainLiteral(agentTitle) : null;
+	/**
+	 * Builds the offers of a catalog page from a keyset query, so the effort does not depend on the number of published data assets.
+	 * @param after the page starts after this data asset id, null for the first page
+	 */
+	private Future<Collection<Resource>> getOfferPage(JsonObject config, Long after) {
+		Future<Collection<Resource>> pageFuture = Future.future();
+		DataResourceFactory factory;
 		try {
-			agent = new AgentBuilder(new URI(config.getString("url")+"#"+agentRole))
-					._description_(new ArrayList<>(Arrays.asList(desc)))
-					._title_(new ArrayList<>(Arrays.asList(title)))
-					.build();
+			factory = getDataResourceFactory(config);
 		} catch (Exception e) {
 			LOGGER.error(e);
+			pageFuture.fail(e);
+			return pageFuture;
 		}
-		return agent;
+		dataAssetManager.findPublishedAfter(after == null ? 0L : after, getCatalogPageSize(), reply -> {
+			if(reply.succeeded()) {
+				List<DataAsset> dataAssets = reply.result();
+				workerExecutor.<Collection<Resource>>executeBlocking(f -> {
+					List<Resource> resources = new ArrayList<>(dataAssets.size());
+					for(DataAsset dataAsset : dataAssets) {
+						Resource resource = factory.create(dataAsset);
+						if(resource != null) {
+							resources.add(resource);
+						}
+					}
+					f.complete(resources);
+				}, false, pageFuture.completer());
+			}
+			else {
+				pageFuture.fail(reply.cause());
+			}
+		});
+		return pageFuture;
 	}
 
-	private ArrayList<PlainLiteral> getKeyWords(DataAsset da) {
-		ArrayList<PlainLiteral> keywords = new ArrayList<>();
-		for (String tag : da.getTags()) {
-			keywords.add(new PlainLiteral(tag));
+	/**
+	 * @return the number of offers per catalog page, 0 if the catalog is not paged
+	 */
+	private int getCatalogPageSize() {
+		Integer pageSize = settings.get(Constants.CATALOG_PAGE_SIZE);
+		return pageSize == null || pageSize < 1 ? 0 : Math.min(pageSize, PageQuery.MAX_LIMIT);
+	}
+
+	private DataResourceFactory getDataResourceFactory(JsonObject config) throws URISyntaxException {
+		long version = versionStamps.get(VersionStamps.CONFIGURATION);
+		if(dataResourceFactory == null || version != dataResourceFactoryVersion){
+			dataResourceFactory = new DataResourceFactory(config.getString("url"));
+			dataResourceFactoryVersion = version;
 		}
-		return keywords.isEmpty()? null : keywords;
+		return dataResourceFactory;
 	}
 
 	private void getConfiguration(Handler<AsyncResult<JsonObject>> resultHandler){
-
-		databaseService.query("SELECT * FROM configuration", new JsonArray(), reply -> {
-			if(reply.succeeded()){
-				if(reply.result().size() > 0) {
-					resultHandler.handle(Future.succeededFuture(reply.result().get(0)));
-				}
-				else{
-					resultHandler.handle(Future.failedFuture("No config available."));
-				}
-			}
-			else{
-				resultHandler.handle(Future.failedFuture(reply.cause()));
-			}
-		});
+		configManager.getConfiguration(resultHandler);
 	}
 
 	private String getJWT(){
 		//TODO: implement DAPS and return real token
 		return "abcdefg12";
 	}
+
 }
@@ -1,21 +1,18 @@
 package de.fraunhofer.fokus.ids.services;
 
 import de.fraunhofer.fokus.ids.models.Constants;
+import de.fraunhofer.fokus.ids.persistence.managers.ConfigManager;
+import de.fraunhofer.fokus.ids.persistence.managers.DataAssetManager;
 import de.fraunhofer.fokus.ids.persistence.service.DatabaseService;
-import edu.emory.mathcs.backport.java.util.Arrays;
 import io.vertx.config.ConfigRetriever;
 import io.vertx.config.ConfigRetrieverOptions;
 import io.vertx.config.ConfigStoreOptions;
 import io.vertx.core.*;
 import io.vertx.core.json.JsonArray;
-import io.vertx.core.json.JsonObject;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
 import org.mindrot.jbcrypt.BCrypt;
 
-import java.util.ArrayList;
-import java.util.List;
-
 /**
  * @author Vincent Bohlen, vincent.bohlen@fokus.fraunhofer.de
  */
@@ -24,28 +21,29 @@ public class InitService{
 	private final Logger LOGGER = LoggerFactory.getLogger(InitService.class.getName());
 
 	private DatabaseService databaseService;
+	private MigrationService migrationService;
+	private ConfigManager configManager;
+	private DataAssetManager dataAssetManager;
 	private Vertx vertx;
 
 	private final String ADMIN_CREATE_QUERY = "INSERT INTO public.user(created_at, updated_at, username, password) SELECT NOW(), NOW(), ?, ? WHERE NOT EXISTS ( SELECT 1 FROM public.user WHERE username=?)";
-	private final String USER_TABLE_CREATE_QUERY = "CREATE TABLE IF NOT EXISTS public.user (id SERIAL , created_at TIMESTAMP , updated_at TIMESTAMP , username TEXT, password TEXT)";
-	private final String DATAASSET_TABLE_CREATE_QUERY = "CREATE TABLE IF NOT EXISTS dataasset (id SERIAL, created_at TIMESTAMP, updated_at TIMESTAMP, datasetid TEXT, name TEXT, url TEXT, format TEXT, licenseurl TEXT, licensetitle TEXT, datasettitle TEXT, datasetnotes TEXT, orignalresourceurl TEXT, orignaldataseturl TEXT, signature TEXT, status INTEGER, resourceid TEXT, tags TEXT[] , datasetdescription TEXT, organizationtitle TEXT, organizationdescription TEXT, version TEXT, sourceid TEXT)";
-	private final String DATASOURCE_TABLE_CREATE_QUERY = "CREATE TABLE IF NOT EXISTS datasource (id SERIAL, created_at TIMESTAMP, updated_at TIMESTAMP, datasourcename TEXT, data JSONB, datasourcetype TEXT)";
-	private final String JOB_TABLE_CREATE_QUERY = "CREATE TABLE IF NOT EXISTS job (id SERIAL, created_at TIMESTAMP, updated_at TIMESTAMP, data JSONB, status INTEGER, sourceid BIGINT, sourcetype TEXT)";
-	private final String BROKER_TABLE_CREATE_QUERY = "CREATE TABLE IF NOT EXISTS broker (id SERIAL, created_at TIMESTAMP, updated_at TIMESTAMP, url TEXT, status TEXT)";
-	private final String CONFIGURATION_TABLE_CREATE_QUERY = "CREATE TABLE IF NOT EXISTS configuration (id SERIAL, url TEXT, maintainer TEXT, curator TEXT, title TEXT)";
 
 	public InitService(Vertx vertx){
 		this.databaseService = DatabaseService.createProxy(vertx, Constants.DATABASE_SERVICE);
+		this.migrationService = new MigrationService(vertx);
+		this.configManager = new ConfigManager(vertx);
+		this.dataAssetManager = new DataAssetManager(vertx);
 		this.vertx = vertx;
 	}
 
 	public void initDatabase(Handler<AsyncResult<Void>> resultHandler){
 
-		initTables(reply -> {
+		migrationService.migrate(reply -> {
 			if(reply.succeeded()){
 				createAdminUser(reply2 -> {
 					if (reply2.succeeded()) {
-						resultHandler.handle(Future.succeededFuture());
+						// a missing configuration is not an error, it is created via the frontend
+						configManager.loadConfiguration(reply3 -> seedCounters(resultHandler));
 					}
 					else{
 						LOGGER.error("Initialization failed.", reply2.cause());
@@ -53,30 +51,20 @@ public class InitService{
 					}
 				});
 			}
+			else{
+				LOGGER.error("Initialization failed.", reply.cause());
+				resultHandler.handle(Future.failedFuture(reply.cause()));
+			}
 		});
 	}
 
-	private Future<List<JsonObject>> performUpdate(String query){
-		Future<List<JsonObject>> queryFuture = Future.future();
-		databaseService.update(query, new JsonArray(), queryFuture.completer());
-		return queryFuture;
-	}
-
-	private void initTables(Handler<AsyncResult<Void>> resultHandler){
-		CompositeFuture.all(performUpdate(USER_TABLE_CREATE_QUERY),
-				performUpdate(DATAASSET_TABLE_CREATE_QUERY),
-				performUpdate(DATASOURCE_TABLE_CREATE_QUERY),
-				performUpdate(BROKER_TABLE_CREATE_QUERY),
-				performUpdate(JOB_TABLE_CREATE_QUERY),
-				performUpdate(CONFIGURATION_TABLE_CREATE_QUERY)).setHandler( reply -> {
-			if(reply.succeeded()) {
-				LOGGER.info("Tables creation finished.");
-				resultHandler.handle(Future.succeededFuture());
-			}
-			else{
-				LOGGER.error("Tables creation failed", reply.cause());
-				resultHandler.handle(Future.failedFuture(reply.cause()));
+	private void seedCounters(Handler<AsyncResult<Void>> resultHandler){
+		dataAssetManager.seedCounters(reply -> {
+			if (reply.failed()) {
+				// the counters are seeded again on the first request
+				LOGGER.error("Data asset counters could not be seeded.", reply.cause());
 			}
+			resultHandler.handle(Future.succeededFuture());
 		});
 	}
 
@@ -0,0 +1,169 @@
+package de.fraunhofer.fokus.ids.services;
+
+import de.fraunhofer.fokus.ids.models.Constants;
+import de.fraunhofer.fokus.ids.models.Migration;
+import de.fraunhofer.fokus.ids.persistence.enums.DataAssetStatus;
+import de.fraunhofer.fokus.ids.persistence.service.DatabaseService;
+import de.fraunhofer.fokus.ids.persistence.util.Statements;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Brings the database schema to the newest version. Applied migrations are recorded with their checksum in schema_migrations.
+ * New migrations are appended to MIGRATIONS with the next version number; applied migrations must never be changed.
+ * @author Vincent Bohlen, vincent.bohlen@fokus.fraunhofer.de
+ */
+public class MigrationService {
+
+	private final Logger LOGGER = LoggerFactory.getLogger(MigrationService.class.getName());
+
+	private static final long MIGRATION_LOCK = 2019052101L;
+
+	private static final String MIGRATIONS_TABLE_CREATE_QUERY = "CREATE TABLE IF NOT EXISTS schema_migrations (version INTEGER PRIMARY KEY, description TEXT, checksum TEXT, applied_at TIMESTAMP)";
+	private static final String APPLIED_QUERY = "SELECT version, checksum FROM schema_migrations ORDER BY version";
+	private static final String APPLIED_VERSION_QUERY = "SELECT version, checksum FROM schema_migrations WHERE version = ?";
+	private static final String LOCK_QUERY = "SELECT pg_advisory_xact_lock(?)";
+	private static final String RECORD_UPDATE = "INSERT INTO schema_migrations (version, description, checksum, applied_at) values (?, ?, ?, NOW())";
+
+	private static final List<Migration> MIGRATIONS = Arrays.asList(
+			new Migration(1, "initial schema",
+					"CREATE TABLE IF NOT EXISTS public.user (id SERIAL , created_at TIMESTAMP , updated_at TIMESTAMP , username TEXT, password TEXT)",
+					"CREATE TABLE IF NOT EXISTS dataasset (id SERIAL, created_at TIMESTAMP, updated_at TIMESTAMP, datasetid TEXT, name TEXT, url TEXT, format TEXT, licenseurl TEXT, licensetitle TEXT, datasettitle TEXT, datasetnotes TEXT, orignalresourceurl TEXT, orignaldataseturl TEXT, signature TEXT, status INTEGER, resourceid TEXT, tags TEXT[] , datasetdescription TEXT, organizationtitle TEXT, organizationdescription TEXT, version TEXT, sourceid TEXT)",
+					"CREATE TABLE IF NOT EXISTS datasource (id SERIAL, created_at TIMESTAMP, updated_at TIMESTAMP, datasourcename TEXT, data JSONB, datasourcetype TEXT)",
+					"CREATE TABLE IF NOT EXISTS job (id SERIAL, created_at TIMESTAMP, updated_at TIMESTAMP, data JSONB, status INTEGER, sourceid BIGINT, sourcetype TEXT)",
+					"CREATE TABLE IF NOT EXISTS broker (id SERIAL, created_at TIMESTAMP, updated_at TIMESTAMP, url TEXT, status TEXT)",
+					"CREATE TABLE IF NOT EXISTS configuration (id SERIAL, url TEXT, maintainer TEXT, curator TEXT, title TEXT)"),
+			new Migration(2, "primary keys",
+					"ALTER TABLE public.user ADD PRIMARY KEY (id)",
+					"ALTER TABLE dataasset ADD PRIMARY KEY (id)",
+					"ALTER TABLE datasource ADD PRIMARY KEY (id)",
+					"ALTER TABLE job ADD PRIMARY KEY (id)",
+					"ALTER TABLE broker ADD PRIMARY KEY (id)",
+					"ALTER TABLE configuration ADD PRIMARY KEY (id)"),
+			new Migration(3, "lookup indexes",
+					"CREATE INDEX IF NOT EXISTS dataasset_published_idx ON dataasset (id) WHERE status = " + DataAssetStatus.PUBLISHED.ordinal(),
+					"CREATE INDEX IF NOT EXISTS dataasset_sourceid_idx ON dataasset (sourceid)",
+					"CREATE INDEX IF NOT EXISTS datasource_datasourcetype_idx ON datasource (datasourcetype)",
+					"CREATE INDEX IF NOT EXISTS broker_url_idx ON broker (url)",
+					"CREATE INDEX IF NOT EXISTS job_status_idx ON job (status)",
+					"CREATE INDEX IF NOT EXISTS job_created_at_idx ON job (created_at)")
+	);
+
+	private DatabaseService databaseService;
+
+	public MigrationService(Vertx vertx){
+		this.databaseService = DatabaseService.createProxy(vertx, Constants.DATABASE_SERVICE);
+	}
+
+	public void migrate(Handler<AsyncResult<Void>> resultHandler){
+		databaseService.update(MIGRATIONS_TABLE_CREATE_QUERY, new JsonArray(), createReply -> {
+			if(createReply.succeeded()){
+				databaseService.query(APPLIED_QUERY, new JsonArray(), appliedReply -> {
+					if(appliedReply.succeeded()){
+						Map<Integer, String> applied = new HashMap<>();
+						for(JsonObject row : appliedReply.result()){
+							applied.put(row.getInteger("version"), row.getString("checksum"));
+						}
+						List<Migration> pending;
+						try {
+							pending = verify(applied);
+						} catch (IllegalStateException e) {
+							LOGGER.error(e.getMessage());
+							resultHandler.handle(Future.failedFuture(e));
+							return;
+						}
+						apply(pending.iterator(), resultHandler);
+					}
+					else{
+						LOGGER.error("Applied migrations could not be read.", appliedReply.cause());
+						resultHandler.handle(Future.failedFuture(appliedReply.cause()));
+					}
+				});
+			}
+			else{
+				LOGGER.error("Migrations table creation failed.", createReply.cause());
+				resultHandler.handle(Future.failedFuture(createReply.cause()));
+			}
+		});
+	}
+
+	/**
+	 * Compares the applied migrations with the known ones.
+	 * @return the migrations that still have to be applied, in order
+	 * @throws IllegalStateException if an applied migration was changed or the database is newer than this application
+	 */
+	private List<Migration> verify(Map<Integer, String> applied){
+		List<Migration> pending = new ArrayList<>();
+		for(Migration migration : MIGRATIONS){
+			String checksum = applied.remove(migration.getVersion());
+			if(checksum == null){
+				pending.add(migration);
+			}
+			else if(!checksum.equals(migration.getChecksum())){
+				throw new IllegalStateException("Checksum of applied migration " + migration.getVersion() + " (" + migration.getDescription() + ") does not match.");
+			}
+		}
+		if(!applied.isEmpty()){
+			throw new IllegalStateException("Database contains unknown migrations " + applied.keySet() + ".");
+		}
+		return pending;
+	}
+
+	private void apply(Iterator<Migration> pending, Handler<AsyncResult<Void>> resultHandler){
+		if(!pending.hasNext()){
+			LOGGER.info("Database schema is up to date.");
+			resultHandler.handle(Future.succeededFuture());
+			return;
+		}
+		Migration migration = pending.next();
+
+		List<JsonObject> statements = new ArrayList<>();
+		// serializes concurrent startups. The versions read in migrate may be outdated by then,
+		// so the version is checked again under the lock and the transaction ends there if another instance applied it
+		statements.add(Statements.query(LOCK_QUERY, new JsonArray().add(MIGRATION_LOCK)));
+		statements.add(Statements.guard(APPLIED_VERSION_QUERY, new JsonArray().add(migration.getVersion())));
+		for(String statement : migration.getStatements()){
+			statements.add(Statements.update(statement, new JsonArray()));
+		}
+		statements.add(Statements.update(RECORD_UPDATE, new JsonArray()
+				.add(migration.getVersion())
+				.add(migration.getDescription())
+				.add(migration.getChecksum())));
+
+		databaseService.transaction(statements, reply -> {
+			if(reply.succeeded()){
+				if(reply.result().size() < statements.size()){
+					JsonArray applied = reply.result().get(reply.result().size() - 1);
+					if(!migration.getChecksum().equals(applied.getJsonObject(0).getString("checksum"))){
+						IllegalStateException e = new IllegalStateException("Checksum of applied migration " + migration.getVersion() + " (" + migration.getDescription() + ") does not match.");
+						LOGGER.error(e.getMessage());
+						resultHandler.handle(Future.failedFuture(e));
+						return;
+					}
+					LOGGER.info("Migration " + migration.getVersion() + " (" + migration.getDescription() + ") was applied by another instance.");
+				}
+				else {
+					LOGGER.info("Migration " + migration.getVersion() + " (" + migration.getDescription() + ") applied.");
+				}
+				apply(pending, resultHandler);
+			}
+			else{
+				LOGGER.error("Migration " + migration.getVersion() + " (" + migration.getDescription() + ") failed.", reply.cause());
+				resultHandler.handle(Future.failedFuture(reply.cause()));
+			}
+		});
+	}
+}
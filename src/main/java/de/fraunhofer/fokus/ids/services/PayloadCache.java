@@ -0,0 +1,590 @@
+package de.fraunhofer.fokus.ids.services;
+
+import de.fraunhofer.fokus.ids.enums.FileType;
+import de.fraunhofer.fokus.ids.models.Payload;
+import de.fraunhofer.fokus.ids.persistence.util.VersionStamps;
+import io.vertx.config.ConfigRetriever;
+import io.vertx.config.ConfigRetrieverOptions;
+import io.vertx.config.ConfigStoreOptions;
+import io.vertx.core.*;
+import io.vertx.core.file.CopyOptions;
+import io.vertx.core.file.FileSystem;
+import io.vertx.core.file.OpenOptions;
+import io.vertx.core.http.HttpClientResponse;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import java.io.File;
+import java.util.*;
+
+/**
+ * Size bounded disk cache of data asset payloads, keyed by data asset id, FileType and data asset version.
+ * A payload is written to a spool file while it is streamed to the first client and added once it was read completely.
+ * Concurrent requests for the same payload attach to that download and read the spool file as it grows, so the adapter is asked once.
+ * Only downloads whose Content-Length fits the quota are shared, so the spool file is not abandoned for exceeding it while others read it.
+ * The files of an entry are renamed into place only after they were written, so the index rebuilt from the directory after a start never contains partial files.
+ * Entries are evicted least recently used above the quota and removed as soon as the data asset journal records a change of the data asset.
+ * The directory (PAYLOAD_CACHE_DIR) and the quota in MiB (PAYLOAD_CACHE_SIZE, 0 disables the cache) are read from the environment.
+ * Instances are not thread safe and must be used from a single context.
+ * @author Vincent Bohlen, vincent.bohlen@fokus.fraunhofer.de
+ */
+public class PayloadCache {
+
+	private final Logger LOGGER = LoggerFactory.getLogger(PayloadCache.class.getName());
+
+	public static final int DEFAULT_SIZE = 1024;
+
+	private static final String DATA = ".data";
+	private static final String META = ".json";
+	private static final String PART = ".part";
+
+	private Vertx vertx;
+	private FileSystem fileSystem;
+	private VersionStamps versionStamps;
+
+	private String directory;
+	private long quota;
+	private LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private Map<String, Flight> flights = new HashMap<>();
+	private long bytes;
+	private long journalVersion;
+	private boolean loaded;
+	private List<Handler<AsyncResult<Void>>> waiting;
+
+	public PayloadCache(Vertx vertx){
+		this.vertx = vertx;
+		this.fileSystem = vertx.fileSystem();
+		this.versionStamps = new VersionStamps(vertx);
+	}
+
+	/**
+	 * @param resultHandler receives the cached payload, or null if it is not cached
+	 */
+	public void get(Long id, FileType fileType, String version, Handler<AsyncResult<Payload>> resultHandler){
+		load(reply -> {
+			if(reply.failed()){
+				resultHandler.handle(Future.failedFuture(reply.cause()));
+				return;
+			}
+			invalidate();
+			Entry entry = entries.get(key(id, fileType));
+			if(entry == null || !entry.version.equals(String.valueOf(version))){
+				resultHandler.handle(Future.succeededFuture());
+				return;
+			}
+			resultHandler.handle(Future.succeededFuture(toPayload(entry)));
+		});
+	}
+
+	/**
+	 * Attaches to a download of the payload in progress, without looking up the data asset.
+	 * @param complete true to wait until the download is complete, e.g. to serve ranges of the cached file
+	 * @param resultHandler receives a stream of the spool file, the cached file if complete is set,
+	 * or null if there is no download to attach to
+	 */
+	public void join(Long id, FileType fileType, boolean complete, Handler<AsyncResult<Payload>> resultHandler){
+		Flight flight = flight(id, fileType);
+		if(flight == null){
+			resultHandler.handle(Future.succeededFuture());
+		}
+		else{
+			flight.follow(complete, resultHandler);
+		}
+	}
+
+	/**
+	 * Returns the cached payload, attaches to a download of it in progress or downloads it with the fetcher and spools it into the cache while it is read.
+	 * Concurrent requests for a data asset id and FileType thereby lead to a single adapter request.
+	 * @param fetcher requests the payload from the adapter and hands over the paused response
+	 */
+	public void fetch(Long id, FileType fileType, String version, Handler<Handler<AsyncResult<HttpClientResponse>>> fetcher, Handler<AsyncResult<Payload>> resultHandler){
+		get(id, fileType, version, cached -> {
+			if(cached.succeeded() && cached.result() != null){
+				resultHandler.handle(cached);
+				return;
+			}
+			Flight running = flight(id, fileType);
+			if(running != null && running.version.equals(String.valueOf(version))){
+				running.follow(false, followed -> {
+					if(followed.failed() || followed.result() != null){
+						resultHandler.handle(followed);
+					}
+					else{
+						// the running download cannot be shared, e.g. because it exceeds the quota
+						fetcher.handle(fetched -> resultHandler.handle(fetched.map(response -> upstream(id, fileType, version, response).payload)));
+					}
+				});
+				return;
+			}
+			// a download of another version is left alone and this one is not shared
+			Flight flight = running == null ? new Flight(key(id, fileType), version) : null;
+			if(flight != null){
+				flights.put(flight.key, flight);
+			}
+			fetcher.handle(fetched -> {
+				if(fetched.succeeded()){
+					spool(flight, upstream(id, fileType, version, fetched.result()), committed -> {}, resultHandler);
+				}
+				else{
+					if(flight != null){
+						flight.failed(fetched.cause());
+					}
+					resultHandler.handle(Future.failedFuture(fetched.cause()));
+				}
+			});
+		});
+	}
+
+	/**
+	 * Reads the adapter response into the cache without a client reading along, for requests that can only be answered from the complete file, e.g. ranges of a payload whose adapter does not support them.
+	 * Other requests may attach to the download while it is in progress.
+	 * @param upstream the paused adapter response
+	 * @param resultHandler receives the cached file, or the paused stream if the payload cannot be cached
+	 */
+	public void store(Long id, FileType fileType, String version, HttpClientResponse response, Handler<AsyncResult<Payload>> resultHandler){
+		Future<Payload> future = Future.future();
+		future.setHandler(resultHandler);
+		Flight flight = null;
+		if(!flights.containsKey(key(id, fileType))){
+			flight = new Flight(key(id, fileType), version);
+			flights.put(flight.key, flight);
+		}
+		Upstream upstream = upstream(id, fileType, version, response);
+		spool(flight, upstream, committed -> {
+			if(committed.succeeded()){
+				future.tryComplete(toPayload(committed.result()));
+			}
+			else{
+				future.tryFail(committed.cause());
+			}
+		}, reply -> {
+			if(upstream.stream.isSpooling()){
+				upstream.stream.handler(buffer -> {});
+				upstream.stream.resume();
+			}
+			else{
+				future.tryComplete(reply.result());
+			}
+		});
+	}
+
+	/**
+	 * The strong ETag of a payload. The data asset version identifies the payload, like the key of the cache.
+	 */
+	public static String etag(Long id, FileType fileType, String version){
+		return "\"" + id + "-" + fileType.name().toLowerCase() + "-" + Integer.toHexString(String.valueOf(version).hashCode()) + "\"";
+	}
+
+	private Payload toPayload(Entry entry){
+		MultiMap headers = MultiMap.caseInsensitiveMultiMap()
+				.add("content-length", String.valueOf(entry.length));
+		if(entry.contentType != null){
+			headers.add("content-type", entry.contentType);
+		}
+		if(entry.contentDisposition != null){
+			headers.add("content-disposition", entry.contentDisposition);
+		}
+		// the file is opened by sendFile right away, so an eviction afterwards does not affect the running download
+		Payload payload = Payload.fromFile(path(entry.name, DATA), headers);
+		payload.setETag(etag(entry.id, FileType.valueOf(entry.name.substring(entry.name.indexOf('.') + 1)), entry.version));
+		payload.setLastModified(entry.lastModified);
+		return payload;
+	}
+
+	/**
+	 * Spools the body of the adapter response into the cache while it is read. If the payload cannot be cached the body is passed through only.
+	 * @param flight the download other requests attach to, may be null
+	 */
+	private void spool(Flight flight, Upstream upstream, Handler<AsyncResult<Entry>> committedHandler, Handler<AsyncResult<Payload>> resultHandler){
+		String length = upstream.payload.getHeaders().get("content-length");
+		// a body without Content-Length may exceed the quota while it is read, which abandons the spool file.
+		// Requests reading the spool file would then get a truncated body, so such a download is not shared
+		Flight shared = length == null ? null : flight;
+		if(flight != null && shared == null){
+			flight.unshared();
+		}
+		load(reply -> {
+			if(reply.failed() || quota == 0 || (length != null && Long.parseLong(length) > quota)){
+				resultHandler.handle(Future.succeededFuture(upstream.payload));
+				committedHandler.handle(Future.failedFuture("Payload cannot be cached."));
+				if(shared != null){
+					shared.unshared();
+				}
+				return;
+			}
+			Entry entry = new Entry(upstream.key, upstream.id, upstream.version, upstream.payload.getHeaders().get("content-type"), upstream.payload.getHeaders().get("content-disposition"));
+			String spoolFile = path(entry.name + "." + UUID.randomUUID(), DATA + PART);
+			long since = versionStamps.get(VersionStamps.DATA_ASSETS);
+			fileSystem.open(spoolFile, new OpenOptions().setWrite(true).setCreateNew(true), file -> {
+				if(file.failed()){
+					LOGGER.error("Spool file could not be created.", file.cause());
+					resultHandler.handle(Future.succeededFuture(upstream.payload));
+					committedHandler.handle(Future.failedFuture(file.cause()));
+					if(shared != null){
+						shared.unshared();
+					}
+					return;
+				}
+				Handler<AsyncResult<Entry>> committed = shared == null ? committedHandler : result -> {
+					committedHandler.handle(result);
+					shared.committed(result);
+				};
+				upstream.stream.spoolTo(file.result(), quota, written -> {
+					if(shared != null){
+						shared.written(written);
+					}
+				}, spooled -> {
+					if(shared != null){
+						shared.spooled(spooled);
+					}
+					Set<Long> changes = versionStamps.changes(VersionStamps.DATA_ASSETS, since, versionStamps.get(VersionStamps.DATA_ASSETS));
+					if(spooled.failed() || changes == null || changes.contains(upstream.id)){
+						// incomplete, or the data asset changed during the download
+						fileSystem.delete(spoolFile, ar -> {});
+						committed.handle(Future.failedFuture("Payload could not be read completely."));
+					}
+					else{
+						entry.length = spooled.result();
+						commit(entry, spoolFile, committed);
+					}
+				});
+				if(shared != null){
+					shared.started(spoolFile, upstream);
+				}
+				resultHandler.handle(Future.succeededFuture(upstream.payload));
+			});
+		});
+	}
+
+	/**
+	 * Wraps the paused adapter response without spooling it yet.
+	 */
+	private Upstream upstream(Long id, FileType fileType, String version, HttpClientResponse response){
+		MultiMap headers = MultiMap.caseInsensitiveMultiMap();
+		for(String header : Arrays.asList("content-type", "content-length", "content-disposition")){
+			String value = response.getHeader(header);
+			if(value != null){
+				headers.add(header, value);
+			}
+		}
+		PayloadStream stream = new PayloadStream(vertx, response);
+		Payload payload = Payload.fromStream(stream, headers);
+		payload.setETag(etag(id, fileType, version));
+		return new Upstream(key(id, fileType), id, String.valueOf(version), stream, payload);
+	}
+
+	/**
+	 * @return the download in progress, if the journal records no change of the data asset since it started
+	 */
+	private Flight flight(Long id, FileType fileType){
+		Flight flight = flights.get(key(id, fileType));
+		if(flight == null){
+			return null;
+		}
+		Set<Long> changes = versionStamps.changes(VersionStamps.DATA_ASSETS, flight.since, versionStamps.get(VersionStamps.DATA_ASSETS));
+		return changes != null && !changes.contains(id) ? flight : null;
+	}
+
+	private void commit(Entry entry, String spoolFile, Handler<AsyncResult<Entry>> committedHandler){
+		String metaPart = path(entry.name + "." + UUID.randomUUID(), META + PART);
+		Future<Void> meta = Future.future();
+		fileSystem.writeFile(metaPart, entry.toJson().toBuffer(), meta.completer());
+		meta.compose(v -> {
+			Future<Void> data = Future.future();
+			fileSystem.move(spoolFile, path(entry.name, DATA), new CopyOptions().setReplaceExisting(true).setAtomicMove(true), data.completer());
+			return data;
+		}).compose(v -> {
+			Future<Void> metaMove = Future.future();
+			fileSystem.move(metaPart, path(entry.name, META), new CopyOptions().setReplaceExisting(true).setAtomicMove(true), metaMove.completer());
+			return metaMove;
+		}).setHandler(ar -> {
+			if(ar.succeeded()){
+				Entry previous = entries.put(entry.name, entry);
+				if(previous != null){
+					bytes -= previous.length;
+				}
+				bytes += entry.length;
+				entry.lastModified = System.currentTimeMillis();
+				evict();
+				committedHandler.handle(Future.succeededFuture(entry));
+			}
+			else{
+				LOGGER.error("Payload could not be added to the cache.", ar.cause());
+				entries.remove(entry.name);
+				delete(entry.name);
+				fileSystem.delete(spoolFile, r -> {});
+				fileSystem.delete(metaPart, r -> {});
+				committedHandler.handle(Future.failedFuture(ar.cause()));
+			}
+		});
+	}
+
+	private void evict(){
+		Iterator<Entry> eldest = entries.values().iterator();
+		while(bytes > quota && eldest.hasNext()){
+			Entry entry = eldest.next();
+			eldest.remove();
+			bytes -= entry.length;
+			delete(entry.name);
+		}
+	}
+
+	/**
+	 * Removes the entries of all data assets the journal records as changed since the last call.
+	 */
+	private void invalidate(){
+		long current = versionStamps.get(VersionStamps.DATA_ASSETS);
+		if(current == journalVersion){
+			return;
+		}
+		Set<Long> changes = versionStamps.changes(VersionStamps.DATA_ASSETS, journalVersion, current);
+		journalVersion = current;
+		Iterator<Entry> iterator = entries.values().iterator();
+		while(iterator.hasNext()){
+			Entry entry = iterator.next();
+			if(changes == null || changes.contains(entry.id)){
+				iterator.remove();
+				bytes -= entry.length;
+				delete(entry.name);
+			}
+		}
+	}
+
+	private void delete(String name){
+		// the meta file first, without it the data file is not taken into the index
+		fileSystem.delete(path(name, META), meta -> fileSystem.delete(path(name, DATA), data -> {}));
+	}
+
+	private void load(Handler<AsyncResult<Void>> resultHandler){
+		if(loaded){
+			resultHandler.handle(Future.succeededFuture());
+			return;
+		}
+		if(waiting != null){
+			waiting.add(resultHandler);
+			return;
+		}
+		waiting = new ArrayList<>();
+		waiting.add(resultHandler);
+		ConfigRetriever retriever = ConfigRetriever.create(vertx, new ConfigRetrieverOptions()
+				.addStore(new ConfigStoreOptions().setType("env")));
+		retriever.getConfig(config -> {
+			if(config.succeeded()){
+				directory = config.result().getString("PAYLOAD_CACHE_DIR", System.getProperty("java.io.tmpdir") + File.separator + "odc-manager-payloads");
+				quota = config.result().getInteger("PAYLOAD_CACHE_SIZE", DEFAULT_SIZE) * 1024L * 1024L;
+				journalVersion = versionStamps.get(VersionStamps.DATA_ASSETS);
+				// the directory is read once at startup, on a worker thread
+				vertx.<Void>executeBlocking(f -> {
+					rebuild();
+					f.complete();
+				}, false, this::loaded);
+			}
+			else{
+				loaded(Future.failedFuture(config.cause()));
+			}
+			retriever.close();
+		});
+	}
+
+	private void loaded(AsyncResult<Void> result){
+		List<Handler<AsyncResult<Void>>> handlers = waiting;
+		waiting = null;
+		if(result.succeeded()){
+			loaded = true;
+			LOGGER.info("Payload cache contains " + entries.size() + " payloads with " + bytes + " bytes.");
+		}
+		else{
+			LOGGER.error("Payload cache could not be loaded.", result.cause());
+			// passing through uncached, the next request tries again
+		}
+		handlers.forEach(h -> h.handle(result));
+	}
+
+	/**
+	 * Builds the index from the complete entries in the directory and deletes everything else, e.g. spool files of downloads interrupted by a crash.
+	 */
+	private void rebuild(){
+		FileSystem fs = vertx.fileSystem();
+		fs.mkdirsBlocking(directory);
+		List<Entry> found = new ArrayList<>();
+		Set<String> keep = new HashSet<>();
+		for(String file : fs.readDirBlocking(directory)){
+			String name = new File(file).getName();
+			if(!name.endsWith(META)){
+				continue;
+			}
+			name = name.substring(0, name.length() - META.length());
+			String data = path(name, DATA);
+			try{
+				Entry entry = Entry.fromJson(name, fs.readFileBlocking(file).toJsonObject());
+				if(fs.existsBlocking(data) && fs.propsBlocking(data).size() == entry.length){
+					entry.lastModified = fs.propsBlocking(data).lastModifiedTime();
+					found.add(entry);
+					keep.add(name + META);
+					keep.add(name + DATA);
+				}
+			}
+			catch(Exception e){
+				LOGGER.error("Payload cache entry " + name + " is broken.", e);
+			}
+		}
+		for(String file : fs.readDirBlocking(directory)){
+			if(!keep.contains(new File(file).getName())){
+				fs.deleteBlocking(file);
+			}
+		}
+		found.sort(Comparator.comparingLong(e -> e.lastModified));
+		entries.clear();
+		bytes = 0;
+		for(Entry entry : found){
+			entries.put(entry.name, entry);
+			bytes += entry.length;
+		}
+		evict();
+	}
+
+	private String key(Long id, FileType fileType){
+		return id + "." + fileType.name();
+	}
+
+	private String path(String name, String suffix){
+		return directory + File.separator + name + suffix;
+	}
+
+	private static class Entry {
+		private final String name;
+		private final Long id;
+		private final String version;
+		private final String contentType;
+		private final String contentDisposition;
+		private long length;
+		private long lastModified;
+
+		private Entry(String name, Long id, String version, String contentType, String contentDisposition){
+			this.name = name;
+			this.id = id;
+			this.version = version;
+			this.contentType = contentType;
+			this.contentDisposition = contentDisposition;
+		}
+
+		private JsonObject toJson(){
+			return new JsonObject()
+					.put("id", id)
+					.put("version", version)
+					.put("contentType", contentType)
+					.put("contentDisposition", contentDisposition)
+					.put("length", length);
+		}
+
+		private static Entry fromJson(String name, JsonObject json){
+			Entry entry = new Entry(name, json.getLong("id"), json.getString("version"), json.getString("contentType"), json.getString("contentDisposition"));
+			entry.length = json.getLong("length");
+			return entry;
+		}
+	}
+
+	private static class Upstream {
+		private final String key;
+		private final Long id;
+		private final String version;
+		private final PayloadStream stream;
+		private final Payload payload;
+
+		private Upstream(String key, Long id, String version, PayloadStream stream, Payload payload){
+			this.key = key;
+			this.id = id;
+			this.version = version;
+			this.stream = stream;
+			this.payload = payload;
+		}
+	}
+
+	/**
+	 * A download in progress. Requests attaching before the spool file is open wait for it, later ones read the spool file right away.
+	 * Once the spool file is complete requests wait for the cached file. The download leaves the map when it was added to the cache or failed.
+	 */
+	private class Flight {
+		private final String key;
+		private final String version;
+		private final long since;
+		private String spoolFile;
+		private Upstream upstream;
+		private long written;
+		private boolean spooled;
+		private List<Handler<AsyncResult<Payload>>> waiting = new ArrayList<>();
+		private List<Handler<AsyncResult<Payload>>> waitingComplete = new ArrayList<>();
+		private List<SpoolReader> readers = new ArrayList<>();
+
+		private Flight(String key, String version){
+			this.key = key;
+			this.version = String.valueOf(version);
+			this.since = versionStamps.get(VersionStamps.DATA_ASSETS);
+		}
+
+		private void follow(boolean complete, Handler<AsyncResult<Payload>> resultHandler){
+			if(complete || spooled){
+				waitingComplete.add(resultHandler);
+			}
+			else if(spoolFile != null){
+				resultHandler.handle(Future.succeededFuture(reader()));
+			}
+			else{
+				waiting.add(resultHandler);
+			}
+		}
+
+		private Payload reader(){
+			SpoolReader reader = new SpoolReader(vertx, spoolFile, written);
+			readers.add(reader);
+			// the client of the first request going away must not end the download of the others
+			upstream.stream.detachOnCancel();
+			Payload payload = Payload.fromStream(reader, upstream.payload.getHeaders());
+			payload.setETag(upstream.payload.getETag());
+			return payload;
+		}
+
+		private void started(String spoolFile, Upstream upstream){
+			this.spoolFile = spoolFile;
+			this.upstream = upstream;
+			waiting.forEach(h -> h.handle(Future.succeededFuture(reader())));
+			waiting.clear();
+		}
+
+		private void written(long written){
+			this.written = written;
+			readers.forEach(reader -> reader.written(written));
+		}
+
+		private void spooled(AsyncResult<Long> result){
+			spooled = true;
+			if(result.succeeded()){
+				readers.forEach(reader -> reader.end(result.result()));
+			}
+			else{
+				readers.forEach(reader -> reader.fail(result.cause()));
+			}
+			readers.clear();
+		}
+
+		private void committed(AsyncResult<Entry> result){
+			flights.remove(key, this);
+			// if the payload did not make it into the cache, the waiting requests download it themselves
+			waitingComplete.forEach(h -> h.handle(Future.succeededFuture(result.succeeded() ? toPayload(result.result()) : null)));
+			waitingComplete.clear();
+		}
+
+		private void unshared(){
+			flights.remove(key, this);
+			waiting.forEach(h -> h.handle(Future.succeededFuture()));
+			waitingComplete.forEach(h -> h.handle(Future.succeededFuture()));
+		}
+
+		private void failed(Throwable cause){
+			flights.remove(key, this);
+			waiting.forEach(h -> h.handle(Future.failedFuture(cause)));
+			waitingComplete.forEach(h -> h.handle(Future.succeededFuture()));
+		}
+	}
+}
@@ -0,0 +1,16 @@
+package de.fraunhofer.fokus.ids.services;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.streams.ReadStream;
+
+/**
+ * The body of a payload that is not served from a cached file. The stream starts paused.
+ * @author Vincent Bohlen, vincent.bohlen@fokus.fraunhofer.de
+ */
+public interface PayloadReadStream extends ReadStream<Buffer> {
+
+    /**
+     * Gives up reading, e.g. because the client went away.
+     */
+    void cancel();
+}
@@ -0,0 +1,258 @@
+package de.fraunhofer.fokus.ids.services;
+
+import de.fraunhofer.fokus.ids.models.Constants;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.file.AsyncFile;
+import io.vertx.core.http.HttpClientResponse;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The body of an adapter response, optionally written to a spool file of the payload cache while it is read.
+ * The upstream is paused as long as the reader paused the stream or the spool file cannot take more data,
+ * so neither the client nor the disk is overrun.
+ * While the upstream flows, an adapter that sends no data for ADAPTER_INACTIVITY_TIMEOUT seconds is considered hung and its request is reset.
+ * The timer is suspended while the upstream is paused, so a slow client does not end the download.
+ * The stream starts paused.
+ * @author Vincent Bohlen, vincent.bohlen@fokus.fraunhofer.de
+ */
+public class PayloadStream implements PayloadReadStream {
+
+    public static final int DEFAULT_INACTIVITY_TIMEOUT = 30;
+
+    private final Vertx vertx;
+    private final HttpClientResponse upstream;
+    private final long inactivityTimeout;
+    private long inactivityTimer = -1;
+    private boolean failed;
+
+    private Handler<Buffer> handler;
+    private Handler<Void> endHandler;
+    private Handler<Throwable> exceptionHandler;
+    private boolean paused = true;
+    private boolean ended;
+
+    private AsyncFile spool;
+    private long spoolLimit;
+    private long spooled;
+    private boolean spoolFull;
+    private boolean abandoned;
+    private boolean detachOnCancel;
+    private final Deque<long[]> writes = new ArrayDeque<>();
+    private Handler<Long> writtenHandler;
+    private Handler<AsyncResult<Long>> spoolHandler;
+
+    public PayloadStream(Vertx vertx, HttpClientResponse upstream) {
+        this.vertx = vertx;
+        this.upstream = upstream;
+        Integer timeout = vertx.sharedData().<String, Integer>getLocalMap(Constants.SETTINGS).get(Constants.ADAPTER_INACTIVITY_TIMEOUT);
+        this.inactivityTimeout = (timeout == null ? DEFAULT_INACTIVITY_TIMEOUT : timeout) * 1000L;
+        upstream.pause();
+        upstream.endHandler(v -> onEnd());
+        upstream.exceptionHandler(this::onException);
+    }
+
+    /**
+     * Writes the body to the file while it is read. The spool handler receives the number of bytes once the body was read and the file closed,
+     * or a failure if the body is incomplete, exceeds the limit or the file could not be written.
+     * @param writtenHandler receives the number of bytes completely written to the file, whenever it grows
+     */
+    void spoolTo(AsyncFile spool, long spoolLimit, Handler<Long> writtenHandler, Handler<AsyncResult<Long>> spoolHandler) {
+        this.spool = spool;
+        this.spoolLimit = spoolLimit;
+        this.writtenHandler = writtenHandler;
+        this.spoolHandler = spoolHandler;
+        spool.exceptionHandler(t -> abandonSpool(t.getMessage()));
+    }
+
+    /**
+     * @return true if the body is written to a spool file
+     */
+    boolean isSpooling() {
+        return spool != null;
+    }
+
+    /**
+     * Makes cancel keep reading into the spool file, as other requests read the spool file.
+     */
+    void detachOnCancel() {
+        detachOnCancel = true;
+    }
+
+    /**
+     * Stops reading, resets the adapter request and discards the spool file. Has no effect once the body was read completely.
+     * If other requests read the spool file, only the reader is detached and the body is still read into the spool file.
+     */
+    @Override
+    public void cancel() {
+        if (ended) {
+            return;
+        }
+        if (detachOnCancel && spool != null) {
+            handler(buffer -> {});
+            endHandler = null;
+            exceptionHandler = null;
+            resume();
+        } else {
+            abandonSpool("The download was cancelled.");
+            ended = true;
+            stopInactivityTimer();
+            upstream.request().reset();
+        }
+    }
+
+    @Override
+    public PayloadStream exceptionHandler(Handler<Throwable> handler) {
+        this.exceptionHandler = handler;
+        return this;
+    }
+
+    @Override
+    public PayloadStream handler(Handler<Buffer> handler) {
+        this.handler = handler;
+        upstream.handler(handler == null ? null : this::onData);
+        return this;
+    }
+
+    @Override
+    public PayloadStream pause() {
+        paused = true;
+        updateUpstream();
+        return this;
+    }
+
+    @Override
+    public PayloadStream resume() {
+        paused = false;
+        updateUpstream();
+        return this;
+    }
+
+    public PayloadStream fetch(long amount) {
+        return amount > 0 ? resume() : this;
+    }
+
+    @Override
+    public PayloadStream endHandler(Handler<Void> endHandler) {
+        this.endHandler = endHandler;
+        return this;
+    }
+
+    private void onData(Buffer buffer) {
+        stopInactivityTimer();
+        updateUpstream();
+        if (spool != null) {
+            long position = spooled;
+            spooled += buffer.length();
+            if (spooled > spoolLimit) {
+                abandonSpool("The payload exceeds the cache limit.");
+            } else {
+                long[] write = {spooled, 0};
+                writes.add(write);
+                spool.write(buffer, position, ar -> {
+                    if (ar.failed()) {
+                        abandonSpool(ar.cause().getMessage());
+                    } else {
+                        write[1] = 1;
+                        written();
+                    }
+                });
+                if (spool.writeQueueFull()) {
+                    spoolFull = true;
+                    spool.drainHandler(v -> {
+                        spoolFull = false;
+                        updateUpstream();
+                    });
+                    updateUpstream();
+                }
+            }
+        }
+        handler.handle(buffer);
+    }
+
+    /**
+     * Writes may complete out of order, so only the end of the completed writes without a gap is reported.
+     */
+    private void written() {
+        long written = -1;
+        while (!writes.isEmpty() && writes.peek()[1] == 1) {
+            written = writes.poll()[0];
+        }
+        if (written >= 0 && !abandoned) {
+            writtenHandler.handle(written);
+        }
+    }
+
+    private void onEnd() {
+        ended = true;
+        stopInactivityTimer();
+        if (spool != null) {
+            AsyncFile file = spool;
+            Handler<AsyncResult<Long>> completion = spoolHandler;
+            long length = spooled;
+            spool = null;
+            file.close(ar -> completion.handle(ar.succeeded() ? Future.succeededFuture(length) : Future.failedFuture(ar.cause())));
+        }
+        if (endHandler != null) {
+            endHandler.handle(null);
+        }
+    }
+
+    private void onException(Throwable t) {
+        // a reset after the inactivity timeout may be reported by the upstream as well
+        if (failed) {
+            return;
+        }
+        failed = true;
+        ended = true;
+        stopInactivityTimer();
+        abandonSpool(t.getMessage());
+        if (exceptionHandler != null) {
+            exceptionHandler.handle(t);
+        }
+    }
+
+    private void abandonSpool(String reason) {
+        if (spool != null) {
+            AsyncFile file = spool;
+            Handler<AsyncResult<Long>> completion = spoolHandler;
+            spool = null;
+            abandoned = true;
+            spoolFull = false;
+            updateUpstream();
+            file.close(ar -> completion.handle(Future.failedFuture(reason)));
+        }
+    }
+
+    private void updateUpstream() {
+        if (ended) {
+            return;
+        }
+        if (paused || spoolFull) {
+            stopInactivityTimer();
+            upstream.pause();
+        } else {
+            if (inactivityTimer == -1) {
+                inactivityTimer = vertx.setTimer(inactivityTimeout, id -> {
+                    inactivityTimer = -1;
+                    upstream.request().reset();
+                    onException(new TimeoutException("Adapter sent no data for " + inactivityTimeout / 1000 + " seconds."));
+                });
+            }
+            upstream.resume();
+        }
+    }
+
+    private void stopInactivityTimer() {
+        if (inactivityTimer != -1) {
+            vertx.cancelTimer(inactivityTimer);
+            inactivityTimer = -1;
+        }
+    }
+}
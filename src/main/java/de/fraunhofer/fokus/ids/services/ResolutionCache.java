@@ -0,0 +1,197 @@
+package de.fraunhofer.fokus.ids.services;
+
+import de.fraunhofer.fokus.ids.models.Constants;
+import de.fraunhofer.fokus.ids.persistence.entities.DataAsset;
+import de.fraunhofer.fokus.ids.persistence.entities.DataSource;
+import de.fraunhofer.fokus.ids.persistence.managers.DataAssetManager;
+import de.fraunhofer.fokus.ids.persistence.managers.DataSourceManager;
+import de.fraunhofer.fokus.ids.persistence.util.VersionStamps;
+import de.fraunhofer.fokus.ids.services.datasourceAdapter.DataSourceAdapterService;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.core.shareddata.LocalMap;
+
+import java.util.*;
+
+/**
+ * Resolves a data asset id to the data asset, its data source and the host and port of the adapter for the data source type,
+ * so a download of a cached payload needs no round trip to the database or the configuration manager.
+ * Entries expire after RESOLUTION_CACHE_TTL seconds, at most RESOLUTION_CACHE_SIZE entries are kept and the least recently used are evicted.
+ * Entries are removed as soon as the journals record a change of their data asset or data source. Adapter endpoints are not journaled,
+ * they are covered by the TTL and by invalidate after a failed adapter request.
+ * Requests for an id that is being resolved wait for that resolution instead of starting their own.
+ * Instances are not thread safe and must be used from a single context.
+ * @author Vincent Bohlen, vincent.bohlen@fokus.fraunhofer.de
+ */
+public class ResolutionCache {
+
+	private final Logger LOGGER = LoggerFactory.getLogger(ResolutionCache.class.getName());
+
+	public static final int DEFAULT_TTL = 60;
+	public static final int DEFAULT_SIZE = 1000;
+
+	private DataAssetManager dataAssetManager;
+	private DataSourceManager dataSourceManager;
+	private DataSourceAdapterService dataSourceAdapterService;
+	private VersionStamps versionStamps;
+	private LocalMap<String, Integer> settings;
+
+	private LinkedHashMap<Long, Resolution> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private Map<Long, List<Handler<AsyncResult<Resolution>>>> waiting = new HashMap<>();
+	private long dataAssetsVersion;
+	private long dataSourcesVersion;
+
+	public ResolutionCache(Vertx vertx){
+		this.dataAssetManager = new DataAssetManager(vertx);
+		this.dataSourceManager = new DataSourceManager(vertx);
+		this.dataSourceAdapterService = DataSourceAdapterService.createProxy(vertx, Constants.DATASOURCEADAPTER_SERVICE);
+		this.versionStamps = new VersionStamps(vertx);
+		this.settings = vertx.sharedData().getLocalMap(Constants.SETTINGS);
+		this.dataAssetsVersion = versionStamps.get(VersionStamps.DATA_ASSETS);
+		this.dataSourcesVersion = versionStamps.get(VersionStamps.DATA_SOURCES);
+	}
+
+	public void resolve(Long id, Handler<AsyncResult<Resolution>> resultHandler){
+		applyChanges();
+		Resolution resolution = entries.get(id);
+		if(resolution != null && resolution.expires > System.currentTimeMillis()){
+			resultHandler.handle(Future.succeededFuture(resolution));
+			return;
+		}
+		if(waiting.containsKey(id)){
+			waiting.get(id).add(resultHandler);
+			return;
+		}
+		List<Handler<AsyncResult<Resolution>>> handlers = new ArrayList<>();
+		handlers.add(resultHandler);
+		waiting.put(id, handlers);
+
+		long dataAssets = versionStamps.get(VersionStamps.DATA_ASSETS);
+		long dataSources = versionStamps.get(VersionStamps.DATA_SOURCES);
+		load(id, reply -> {
+			waiting.remove(id);
+			if(reply.succeeded()){
+				Resolution loaded = reply.result();
+				// not kept if the data asset or the data source changed during the lookups
+				if(!changed(VersionStamps.DATA_ASSETS, dataAssets, id) && !changed(VersionStamps.DATA_SOURCES, dataSources, loaded.dataSource.getId())){
+					loaded.expires = System.currentTimeMillis() + setting(Constants.RESOLUTION_CACHE_TTL, DEFAULT_TTL) * 1000L;
+					entries.put(id, loaded);
+					evict();
+				}
+			}
+			handlers.forEach(h -> h.handle(reply));
+		});
+	}
+
+	/**
+	 * Removes the resolution of the data asset, e.g. after its adapter could not be reached.
+	 */
+	public void invalidate(Long id){
+		entries.remove(id);
+	}
+
+	private void load(Long id, Handler<AsyncResult<Resolution>> resultHandler){
+		dataAssetManager.findById(id, reply -> {
+			if(reply.failed()){
+				LOGGER.error("DataAsset could not be read.", reply.cause());
+				resultHandler.handle(Future.failedFuture(reply.cause()));
+				return;
+			}
+			DataAsset dataAsset = reply.result();
+			dataSourceManager.findById(dataAsset.getSourceID(), reply2 -> {
+				if(reply2.failed()){
+					LOGGER.error("DataSource could not be read.", reply2.cause());
+					resultHandler.handle(Future.failedFuture(reply2.cause()));
+					return;
+				}
+				DataSource dataSource = reply2.result();
+				dataSourceAdapterService.getAdapter(dataSource.getDatasourceType(), reply3 -> {
+					if(reply3.failed()){
+						LOGGER.error("Adapter could not be resolved.", reply3.cause());
+						resultHandler.handle(Future.failedFuture(reply3.cause()));
+						return;
+					}
+					resultHandler.handle(Future.succeededFuture(new Resolution(dataAsset, dataSource,
+							reply3.result().getString("host"), reply3.result().getInteger("port"))));
+				});
+			});
+		});
+	}
+
+	/**
+	 * Removes the entries of the data assets and data sources the journals record as changed since the last call.
+	 */
+	private void applyChanges(){
+		long dataAssets = versionStamps.get(VersionStamps.DATA_ASSETS);
+		if(dataAssets != dataAssetsVersion){
+			Set<Long> changes = versionStamps.changes(VersionStamps.DATA_ASSETS, dataAssetsVersion, dataAssets);
+			dataAssetsVersion = dataAssets;
+			if(changes == null){
+				entries.clear();
+			}
+			else{
+				changes.forEach(entries::remove);
+			}
+		}
+		long dataSources = versionStamps.get(VersionStamps.DATA_SOURCES);
+		if(dataSources != dataSourcesVersion){
+			Set<Long> changes = versionStamps.changes(VersionStamps.DATA_SOURCES, dataSourcesVersion, dataSources);
+			dataSourcesVersion = dataSources;
+			entries.values().removeIf(resolution -> changes == null || changes.contains(resolution.dataSource.getId()));
+		}
+	}
+
+	private boolean changed(String family, long since, Long key){
+		Set<Long> changes = versionStamps.changes(family, since, versionStamps.get(family));
+		return changes == null || changes.contains(key);
+	}
+
+	private void evict(){
+		int size = setting(Constants.RESOLUTION_CACHE_SIZE, DEFAULT_SIZE);
+		Iterator<Resolution> eldest = entries.values().iterator();
+		while(entries.size() > size && eldest.hasNext()){
+			eldest.next();
+			eldest.remove();
+		}
+	}
+
+	private int setting(String key, int defaultValue){
+		Integer value = settings.get(key);
+		return value == null ? defaultValue : value;
+	}
+
+	public static class Resolution {
+		private final DataAsset dataAsset;
+		private final DataSource dataSource;
+		private final String host;
+		private final int port;
+		private long expires;
+
+		private Resolution(DataAsset dataAsset, DataSource dataSource, String host, int port){
+			this.dataAsset = dataAsset;
+			this.dataSource = dataSource;
+			this.host = host;
+			this.port = port;
+		}
+
+		public DataAsset getDataAsset() {
+			return dataAsset;
+		}
+
+		public DataSource getDataSource() {
+			return dataSource;
+		}
+
+		public String getHost() {
+			return host;
+		}
+
+		public int getPort() {
+			return port;
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package de.fraunhofer.fokus.ids.services;
+
+import de.fraunhofer.fokus.ids.codecs.InfomodelSerializer;
+import de.fraunhofer.fokus.ids.models.Constants;
+import de.fraunhofer.fokus.ids.persistence.util.VersionStamps;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.WorkerExecutor;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the serialized connector self-description as UTF-8 encoded chunks. It is rebuilt only after the published data assets or the configuration changed.
+ * Requests arriving while the self-description is rebuilt wait for that build instead of starting their own.
+ * Instances are not thread safe and must be used from a single context.
+ * @author Vincent Bohlen, vincent.bohlen@fokus.fraunhofer.de
+ */
+public class SelfDescriptionCache {
+
+	private final Logger LOGGER = LoggerFactory.getLogger(SelfDescriptionCache.class.getName());
+
+	private IDSService idsService;
+	private VersionStamps versionStamps;
+	private WorkerExecutor workerExecutor;
+
+	private List<Buffer> payload;
+	private String payloadVersion;
+	private List<Handler<AsyncResult<List<Buffer>>>> waiting;
+
+	public SelfDescriptionCache(Vertx vertx, IDSService idsService){
+		this.idsService = idsService;
+		this.versionStamps = new VersionStamps(vertx);
+		this.workerExecutor = vertx.createSharedWorkerExecutor(Constants.CATALOG_WORKER_POOL, Constants.CATALOG_WORKER_POOL_SIZE);
+	}
+
+	/**
+	 * @param resultHandler receives the pretty printed JSON serialization of the connector
+	 */
+	public void getPayload(Handler<AsyncResult<List<Buffer>>> resultHandler){
+		String version = currentVersion();
+		if(payload != null && version.equals(payloadVersion)){
+			resultHandler.handle(Future.succeededFuture(payload));
+		}
+		else if(waiting != null){
+			waiting.add(resultHandler);
+		}
+		else{
+			waiting = new ArrayList<>();
+			waiting.add(resultHandler);
+			Future<List<Buffer>> serialized = Future.future();
+			idsService.getConnector(reply -> {
+				if(reply.succeeded()){
+					// serialized on the catalog worker pool, the catalog may contain tens of thousands of resources
+					workerExecutor.<List<Buffer>>executeBlocking(f -> {
+						try {
+							f.complete(InfomodelSerializer.serialize(reply.result(), true));
+						} catch (IOException e) {
+							f.fail(e);
+						}
+					}, false, serialized.completer());
+				}
+				else{
+					serialized.fail(reply.cause());
+				}
+			});
+			serialized.setHandler(reply -> {
+				List<Handler<AsyncResult<List<Buffer>>>> handlers = waiting;
+				waiting = null;
+				if(reply.succeeded()){
+					// stored with the version read before building, a write during the build leads to another rebuild
+					payload = reply.result();
+					payloadVersion = version;
+					handlers.forEach(h -> h.handle(Future.succeededFuture(payload)));
+				}
+				else{
+					LOGGER.error(reply.cause());
+					handlers.forEach(h -> h.handle(Future.failedFuture(reply.cause())));
+				}
+			});
+		}
+	}
+
+	private String currentVersion(){
+		return versionStamps.get(VersionStamps.PUBLISHED) + ":" + versionStamps.get(VersionStamps.CONFIGURATION);
+	}
+}
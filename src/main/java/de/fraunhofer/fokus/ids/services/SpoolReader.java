@@ -0,0 +1,148 @@
+package de.fraunhofer.fokus.ids.services;
+
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.file.AsyncFile;
+import io.vertx.core.file.OpenOptions;
+
+/**
+ * Reads the spool file of a download in progress while it is written, for requests attached to the download of another request.
+ * The reader follows the number of bytes written to the file and ends once the download is complete and all of them were read.
+ * @author Vincent Bohlen, vincent.bohlen@fokus.fraunhofer.de
+ */
+public class SpoolReader implements PayloadReadStream {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private AsyncFile file;
+    private long position;
+    private long written;
+    private long length = -1;
+    private boolean paused = true;
+    private boolean reading;
+    private boolean closed;
+
+    private Handler<Buffer> handler;
+    private Handler<Void> endHandler;
+    private Handler<Throwable> exceptionHandler;
+
+    SpoolReader(Vertx vertx, String spoolFile, long written) {
+        this.written = written;
+        vertx.fileSystem().open(spoolFile, new OpenOptions().setRead(true).setWrite(false).setCreate(false), reply -> {
+            if (reply.failed()) {
+                fail(reply.cause());
+            } else if (closed) {
+                reply.result().close();
+            } else {
+                file = reply.result();
+                read();
+            }
+        });
+    }
+
+    /**
+     * @param written the number of bytes written to the spool file so far
+     */
+    void written(long written) {
+        this.written = written;
+        read();
+    }
+
+    /**
+     * @param length the number of bytes of the complete download
+     */
+    void end(long length) {
+        this.length = length;
+        this.written = length;
+        read();
+    }
+
+    void fail(Throwable cause) {
+        if (!closed) {
+            close();
+            if (exceptionHandler != null) {
+                exceptionHandler.handle(cause);
+            }
+        }
+    }
+
+    @Override
+    public void cancel() {
+        close();
+    }
+
+    @Override
+    public SpoolReader exceptionHandler(Handler<Throwable> handler) {
+        this.exceptionHandler = handler;
+        return this;
+    }
+
+    @Override
+    public SpoolReader handler(Handler<Buffer> handler) {
+        this.handler = handler;
+        return this;
+    }
+
+    @Override
+    public SpoolReader pause() {
+        paused = true;
+        return this;
+    }
+
+    @Override
+    public SpoolReader resume() {
+        paused = false;
+        read();
+        return this;
+    }
+
+    public SpoolReader fetch(long amount) {
+        return amount > 0 ? resume() : this;
+    }
+
+    @Override
+    public SpoolReader endHandler(Handler<Void> endHandler) {
+        this.endHandler = endHandler;
+        return this;
+    }
+
+    private void read() {
+        if (closed || file == null || paused || reading) {
+            return;
+        }
+        if (position < written) {
+            int chunk = (int) Math.min(CHUNK_SIZE, written - position);
+            reading = true;
+            file.read(Buffer.buffer(chunk), 0, position, chunk, reply -> {
+                reading = false;
+                if (closed) {
+                    return;
+                }
+                if (reply.failed() || reply.result().length() == 0) {
+                    fail(reply.failed() ? reply.cause() : new IllegalStateException("Spool file is truncated."));
+                    return;
+                }
+                position += reply.result().length();
+                if (handler != null) {
+                    handler.handle(reply.result());
+                }
+                read();
+            });
+        } else if (position == length) {
+            close();
+            if (endHandler != null) {
+                endHandler.handle(null);
+            }
+        }
+    }
+
+    private void close() {
+        if (!closed) {
+            closed = true;
+            if (file != null) {
+                file.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package de.fraunhofer.fokus.ids.services.datasourceAdapter;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.http.ConnectionPoolTooBusyException;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpVersion;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.client.WebClient;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps one HTTP client with its own connection pool per adapter endpoint, so a burst of requests to one adapter does not queue behind the default
+ * pool of five connections shared by all adapters. Pool size, keep-alive, pipelining, HTTP/2 and the idle timeout after which connections are closed
+ * are read from the environment by options, file downloads use downloadOptions and a pool of their own.
+ * With HTTP/2 the first request is an h2c upgrade, adapters without HTTP/2 support answer it with HTTP/1.1 and the pool stays on HTTP/1.1.
+ * Vert.x does not expose its pools, so the requests in flight are counted here and the requests waiting for a connection are estimated
+ * from the capacity of the pool for the protocol the adapter last replied with.
+ * Instances are not thread safe and must be used from a single context.
+ * @author Vincent Bohlen, vincent.bohlen@fokus.fraunhofer.de
+ */
+public class AdapterClients {
+
+    public static final int DEFAULT_POOL_SIZE = 20;
+    public static final boolean DEFAULT_KEEP_ALIVE = true;
+    public static final boolean DEFAULT_PIPELINING = false;
+    public static final int DEFAULT_PIPELINING_LIMIT = 10;
+    public static final boolean DEFAULT_HTTP2 = false;
+    public static final int DEFAULT_HTTP2_POOL_SIZE = 1;
+    public static final int DEFAULT_HTTP2_MULTIPLEXING_LIMIT = 100;
+    public static final int DEFAULT_IDLE_TIMEOUT = 60;
+    public static final int DEFAULT_DOWNLOAD_IDLE_TIMEOUT = 600;
+    public static final int DEFAULT_MAX_WAIT_QUEUE = 256;
+
+    private Vertx vertx;
+    private HttpClientOptions options;
+
+    private Map<String, Pool> pools = new HashMap<>();
+
+    public AdapterClients(Vertx vertx, HttpClientOptions options) {
+        this.vertx = vertx;
+        this.options = options;
+    }
+
+    /**
+     * @param env the environment, e.g. as read by the ConfigRetriever
+     */
+    public static HttpClientOptions options(JsonObject env) {
+        HttpClientOptions options = new HttpClientOptions()
+                .setMaxPoolSize(env.getInteger("ADAPTER_POOL_SIZE", DEFAULT_POOL_SIZE))
+                .setKeepAlive(env.getBoolean("ADAPTER_KEEP_ALIVE", DEFAULT_KEEP_ALIVE))
+                .setPipelining(env.getBoolean("ADAPTER_PIPELINING", DEFAULT_PIPELINING))
+                .setPipeliningLimit(env.getInteger("ADAPTER_PIPELINING_LIMIT", DEFAULT_PIPELINING_LIMIT))
+                .setHttp2MaxPoolSize(env.getInteger("ADAPTER_HTTP2_POOL_SIZE", DEFAULT_HTTP2_POOL_SIZE))
+                .setHttp2MultiplexingLimit(env.getInteger("ADAPTER_HTTP2_MULTIPLEXING_LIMIT", DEFAULT_HTTP2_MULTIPLEXING_LIMIT))
+                .setIdleTimeout(env.getInteger("ADAPTER_IDLE_TIMEOUT", DEFAULT_IDLE_TIMEOUT))
+                .setMaxWaitQueueSize(env.getInteger("ADAPTER_MAX_WAIT_QUEUE", DEFAULT_MAX_WAIT_QUEUE));
+        if (env.getBoolean("ADAPTER_HTTP2", DEFAULT_HTTP2)) {
+            options.setProtocolVersion(HttpVersion.HTTP_2).setHttp2ClearTextUpgrade(true);
+        }
+        return options;
+    }
+
+    /**
+     * The options of the file downloads. The idle timeout of Vert.x also closes a connection whose response is paused,
+     * and a download is paused as long as the client reading it is slow. So the download pools close idle connections only
+     * after ADAPTER_DOWNLOAD_IDLE_TIMEOUT seconds, the longest pause of a client, and an adapter stalling while the client reads
+     * is detected by the inactivity timeout of the PayloadStream instead.
+     * @param env the environment, e.g. as read by the ConfigRetriever
+     */
+    public static HttpClientOptions downloadOptions(JsonObject env) {
+        return options(env).setIdleTimeout(env.getInteger("ADAPTER_DOWNLOAD_IDLE_TIMEOUT", DEFAULT_DOWNLOAD_IDLE_TIMEOUT));
+    }
+
+    public Pool pool(String host, int port) {
+        return pools.computeIfAbsent(host + ":" + port, endpoint -> new Pool(vertx.createHttpClient(options)));
+    }
+
+    /**
+     * @return the statistics of the pools by adapter endpoint
+     */
+    public JsonObject getStats() {
+        JsonObject stats = new JsonObject();
+        pools.forEach((endpoint, pool) -> stats.put(endpoint, pool.getStats()));
+        return stats;
+    }
+
+    public class Pool {
+        private final HttpClient httpClient;
+        private final WebClient webClient;
+        private HttpVersion version = HttpVersion.HTTP_1_1;
+
+        private int active;
+        private int peakActive;
+        private int peakWaiting;
+        private long requests;
+        private long failures;
+        private long rejected;
+
+        private Pool(HttpClient httpClient) {
+            this.httpClient = httpClient;
+            this.webClient = WebClient.wrap(httpClient);
+        }
+
+        public HttpClient getHttpClient() {
+            return httpClient;
+        }
+
+        public WebClient getWebClient() {
+            return webClient;
+        }
+
+        /**
+         * Records a request sent with the clients of this pool.
+         */
+        public void begin() {
+            requests++;
+            active++;
+            peakActive = Math.max(peakActive, active);
+            peakWaiting = Math.max(peakWaiting, waiting());
+        }
+
+        /**
+         * Records the end of a request, i.e. its response head or its failure.
+         * @param version the protocol of the response, null if the request failed
+         */
+        public void end(HttpVersion version, Throwable failure) {
+            active--;
+            if (version != null) {
+                this.version = version;
+            }
+            if (failure instanceof ConnectionPoolTooBusyException) {
+                rejected++;
+            } else if (failure != null) {
+                failures++;
+            }
+        }
+
+        /**
+         * @return the requests one connection of the pool can carry at the same time times the number of connections
+         */
+        private int capacity() {
+            if (version == HttpVersion.HTTP_2) {
+                return options.getHttp2MaxPoolSize() * options.getHttp2MultiplexingLimit();
+            }
+            return options.getMaxPoolSize() * (options.isPipelining() ? options.getPipeliningLimit() : 1);
+        }
+
+        private int waiting() {
+            return Math.max(active - capacity(), 0);
+        }
+
+        private JsonObject getStats() {
+            return new JsonObject()
+                    .put("protocol", version.name())
+                    .put("capacity", capacity())
+                    .put("active", active)
+                    .put("peakActive", peakActive)
+                    .put("utilization", (double) Math.min(active, capacity()) / capacity())
+                    .put("waiting", waiting())
+                    .put("peakWaiting", peakWaiting)
+                    .put("maxWaitQueue", options.getMaxWaitQueueSize())
+                    .put("requests", requests)
+                    .put("failures", failures)
+                    .put("rejected", rejected);
+        }
+    }
+}
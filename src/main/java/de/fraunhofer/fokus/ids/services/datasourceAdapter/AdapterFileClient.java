@@ -0,0 +1,144 @@
+package de.fraunhofer.fokus.ids.services.datasourceAdapter;
+
+import de.fraunhofer.fokus.ids.models.Constants;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.MultiMap;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClientRequest;
+import io.vertx.core.http.HttpClientResponse;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.core.shareddata.LocalMap;
+
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Requests files from the data source adapters over HTTP instead of the event bus, so the file is streamed and never buffered or written to disk.
+ * The adapter endpoint is resolved by the caller, e.g. via the ResolutionCache, the file itself is requested with exactly one POST to /getFile/.
+ * Downloads pass an AdapterGuard per data source type of their own: at most ADAPTER_MAX_DOWNLOADS requests per type wait for the response of the adapter,
+ * which has to arrive within ADAPTER_DOWNLOAD_TIMEOUT seconds. The body is not limited in time, a slow client pauses it.
+ * Each adapter endpoint has a client pool of its own for downloads, see AdapterClients.downloadOptions: its idle timeout is long,
+ * as it also closes a download whose client pauses the body for that long. A stalled body is ended by the PayloadStream.
+ * @author Vincent Bohlen, vincent.bohlen@fokus.fraunhofer.de
+ */
+public class AdapterFileClient {
+
+    private Logger LOGGER = LoggerFactory.getLogger(AdapterFileClient.class.getName());
+
+    public static final int DEFAULT_MAX_DOWNLOADS = 32;
+    public static final int DEFAULT_DOWNLOAD_TIMEOUT = 60;
+
+    private Vertx vertx;
+    private LocalMap<String, Integer> settings;
+    private AdapterGuards adapterGuards;
+    private AdapterClients adapterClients;
+
+    public AdapterFileClient(Vertx vertx) {
+        this.vertx = vertx;
+        this.settings = vertx.sharedData().getLocalMap(Constants.SETTINGS);
+    }
+
+    /**
+     * @param request the ResourceRequest as JsonObject
+     * @param headers additional request headers, e.g. Range. Adapters supporting ranges reply with 206, all others with 200 and the complete file.
+     * @param resultHandler receives the paused response of the adapter, the receiver has to resume it or reset its request
+     */
+    public void getFile(String dataSourceType, String host, int port, JsonObject request, MultiMap headers, Handler<AsyncResult<HttpClientResponse>> resultHandler) {
+        AdapterClients.Pool pool = clients().pool(host, port);
+        guards().guard(dataSourceType).<HttpClientResponse>execute(future -> {
+            Future<HttpClientResponse> response = Future.future();
+            response.setHandler(ar -> {
+                pool.end(ar.succeeded() ? ar.result().version() : null, ar.cause());
+                future.handle(ar);
+            });
+            pool.begin();
+            post(pool, port, host, "/getFile/", request, headers, response);
+        }, ar -> {
+            if (ar.failed() || ar.result().statusCode() == 200 || ar.result().statusCode() == 206) {
+                resultHandler.handle(ar);
+            } else {
+                ar.result().request().reset();
+                resultHandler.handle(Future.failedFuture("Adapter replied with status " + ar.result().statusCode() + "."));
+            }
+        });
+    }
+
+    /**
+     * @return the breaker state, downloads waiting for a response and rejection counts by data source type
+     */
+    public JsonObject getStats() {
+        return guards().getStats();
+    }
+
+    /**
+     * @return the utilization and wait queue of the client pools by adapter endpoint
+     */
+    public JsonObject getPoolStats() {
+        return clients().getStats();
+    }
+
+    /**
+     * Fails the future on transport errors, timeouts and 5xx replies, the guard counts those as failures of the adapter.
+     */
+    private void post(AdapterClients.Pool pool, int port, String host, String path, JsonObject payload, MultiMap headers, Future<HttpClientResponse> future) {
+        HttpClientRequest clientRequest = pool.getHttpClient().post(port, host, path);
+        // only the response head is timed here, HttpClientRequest.setTimeout would also fire while a slow client pauses the body. The body is timed by the PayloadStream
+        int timeout = setting(Constants.ADAPTER_DOWNLOAD_TIMEOUT, DEFAULT_DOWNLOAD_TIMEOUT);
+        long timer = vertx.setTimer(timeout * 1000L, id -> {
+            if (future.tryFail(new TimeoutException("Adapter did not reply within " + timeout + " seconds."))) {
+                LOGGER.error(future.cause());
+                clientRequest.reset();
+            }
+        });
+        clientRequest.handler(response -> {
+            vertx.cancelTimer(timer);
+            if (response.statusCode() < 500) {
+                // paused until the receiver has set up the target of the body
+                response.pause();
+                if (!future.tryComplete(response)) {
+                    response.request().reset();
+                }
+            } else {
+                response.request().reset();
+                future.tryFail("Adapter replied with status " + response.statusCode() + ".");
+            }
+        });
+        clientRequest.exceptionHandler(t -> {
+            vertx.cancelTimer(timer);
+            if (future.tryFail(t)) {
+                LOGGER.error(t);
+            }
+        });
+        clientRequest.headers().addAll(headers);
+        clientRequest.putHeader("content-type", "application/json");
+        clientRequest.end(payload.toBuffer());
+    }
+
+    /**
+     * The settings are read from the environment after the controllers are created, so the guards and pools are created with the first download.
+     */
+    private AdapterGuards guards() {
+        if (adapterGuards == null) {
+            adapterGuards = new AdapterGuards(setting(Constants.ADAPTER_MAX_DOWNLOADS, DEFAULT_MAX_DOWNLOADS),
+                    setting(Constants.ADAPTER_BREAKER_THRESHOLD, AdapterGuards.DEFAULT_FAILURE_THRESHOLD),
+                    setting(Constants.ADAPTER_BREAKER_RESET, AdapterGuards.DEFAULT_RESET_TIMEOUT));
+        }
+        return adapterGuards;
+    }
+
+    private AdapterClients clients() {
+        if (adapterClients == null) {
+            JsonObject env = vertx.sharedData().<String, JsonObject>getLocalMap(Constants.ADAPTER_CLIENT_SETTINGS).get(Constants.ADAPTER_CLIENT_SETTINGS);
+            adapterClients = new AdapterClients(vertx, AdapterClients.downloadOptions(env == null ? new JsonObject() : env));
+        }
+        return adapterClients;
+    }
+
+    private int setting(String key, int defaultValue) {
+        Integer value = settings.get(key);
+        return value == null ? defaultValue : value;
+    }
+}
@@ -0,0 +1,141 @@
+package de.fraunhofer.fokus.ids.services.datasourceAdapter;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonObject;
+
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Isolates the requests to the adapter of one data source type: at most maxConcurrent requests are in flight, further ones are rejected,
+ * and a circuit breaker opens after failureThreshold consecutive failures. While the breaker is open every request is rejected right away,
+ * after resetTimeout a single trial request decides whether it closes again.
+ * Only transport errors, timeouts and 5xx replies of the adapter are failures, the caller decides which results those are.
+ * Instances are not thread safe and must be used from a single context.
+ * @author Vincent Bohlen, vincent.bohlen@fokus.fraunhofer.de
+ */
+public class AdapterGuard {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final String dataSourceType;
+    private final int maxConcurrent;
+    private final int failureThreshold;
+    private final long resetTimeout;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean trial;
+    private int active;
+
+    private long calls;
+    private long failures;
+    private long timeouts;
+    private long rejectedOpen;
+    private long rejectedFull;
+
+    public AdapterGuard(String dataSourceType, int maxConcurrent, int failureThreshold, long resetTimeout) {
+        this.dataSourceType = dataSourceType;
+        this.maxConcurrent = maxConcurrent;
+        this.failureThreshold = failureThreshold;
+        this.resetTimeout = resetTimeout;
+    }
+
+    /**
+     * Runs the operation if the guard admits it, and records its outcome.
+     * @param operation completes its future with the result, or fails it on a failure of the adapter
+     */
+    public <T> void execute(Handler<Future<T>> operation, Handler<AsyncResult<T>> resultHandler) {
+        String rejection = admit();
+        if (rejection != null) {
+            resultHandler.handle(Future.failedFuture(rejection));
+            return;
+        }
+        // while half open admit lets nothing but the trial request through
+        boolean trialRequest = state == State.HALF_OPEN;
+        Future<T> future = Future.future();
+        future.setHandler(ar -> {
+            release(trialRequest, ar.failed() ? ar.cause() : null);
+            resultHandler.handle(ar);
+        });
+        try {
+            operation.handle(future);
+        } catch (RuntimeException e) {
+            future.tryFail(e);
+        }
+    }
+
+    /**
+     * @return the state, the requests in flight and the call, failure, timeout and rejection counts since the start
+     */
+    public JsonObject getStats() {
+        return new JsonObject()
+                .put("state", currentState().name())
+                .put("active", active)
+                .put("maxConcurrent", maxConcurrent)
+                .put("calls", calls)
+                .put("failures", failures)
+                .put("timeouts", timeouts)
+                .put("rejectedOpen", rejectedOpen)
+                .put("rejectedFull", rejectedFull);
+    }
+
+    /**
+     * @return null if the request may be sent, otherwise the reason it is rejected
+     */
+    private String admit() {
+        State current = currentState();
+        if (current == State.OPEN || (current == State.HALF_OPEN && trial)) {
+            rejectedOpen++;
+            return "Circuit breaker of adapter " + dataSourceType + " is open.";
+        }
+        if (active >= maxConcurrent) {
+            rejectedFull++;
+            return "Adapter " + dataSourceType + " has " + active + " requests in flight.";
+        }
+        if (current == State.HALF_OPEN) {
+            state = State.HALF_OPEN;
+            trial = true;
+        }
+        active++;
+        calls++;
+        return null;
+    }
+
+    /**
+     * Only the outcome of the trial request decides about a half open breaker. Requests admitted before the breaker opened
+     * are still counted, but neither close it nor open it again.
+     * @param trialRequest true if the request was admitted as the trial of a half open breaker
+     */
+    private void release(boolean trialRequest, Throwable failure) {
+        active--;
+        if (trialRequest) {
+            trial = false;
+        }
+        if (failure == null) {
+            consecutiveFailures = 0;
+            if (trialRequest) {
+                state = State.CLOSED;
+            }
+            return;
+        }
+        failures++;
+        if (failure instanceof TimeoutException) {
+            timeouts++;
+        }
+        consecutiveFailures++;
+        if (trialRequest || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+        }
+    }
+
+    private State currentState() {
+        if (state == State.OPEN && System.currentTimeMillis() >= openedAt + resetTimeout) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+}
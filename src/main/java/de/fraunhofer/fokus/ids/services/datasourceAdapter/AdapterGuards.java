@@ -0,0 +1,46 @@
+package de.fraunhofer.fokus.ids.services.datasourceAdapter;
+
+import io.vertx.core.json.JsonObject;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Holds one AdapterGuard per data source type, so a hung or failing adapter only exhausts its own limit and trips its own breaker.
+ * Instances are not thread safe and must be used from a single context.
+ * @author Vincent Bohlen, vincent.bohlen@fokus.fraunhofer.de
+ */
+public class AdapterGuards {
+
+    public static final int DEFAULT_MAX_CONCURRENT = 16;
+    public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+    public static final int DEFAULT_RESET_TIMEOUT = 30;
+
+    private int maxConcurrent;
+    private int failureThreshold;
+    private long resetTimeout;
+
+    private Map<String, AdapterGuard> guards = new HashMap<>();
+
+    /**
+     * @param resetTimeout seconds an open breaker rejects all requests before a trial request is let through
+     */
+    public AdapterGuards(int maxConcurrent, int failureThreshold, int resetTimeout) {
+        this.maxConcurrent = maxConcurrent;
+        this.failureThreshold = failureThreshold;
+        this.resetTimeout = resetTimeout * 1000L;
+    }
+
+    public AdapterGuard guard(String dataSourceType) {
+        return guards.computeIfAbsent(dataSourceType, type -> new AdapterGuard(type, maxConcurrent, failureThreshold, resetTimeout));
+    }
+
+    /**
+     * @return the statistics of the guards by data source type
+     */
+    public JsonObject getStats() {
+        JsonObject stats = new JsonObject();
+        guards.forEach((type, guard) -> stats.put(type, guard.getStats()));
+        return stats;
+    }
+}
@@ -0,0 +1,151 @@
+package de.fraunhofer.fokus.ids.services.datasourceAdapter;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.ext.web.client.WebClient;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Caches the host and port of the adapter per data source type as returned by /getAdapter/{type} of the configuration manager.
+ * An entry is valid for ttl seconds. A lookup of an entry in the last fifth of that time refreshes it in the background, so entries in use do not expire.
+ * If the configuration manager cannot be reached or does not reply within timeout seconds, expired entries are still served for maxStale seconds.
+ * Concurrent lookups of a type that is being loaded wait for that load.
+ * Instances are not thread safe and must be used from a single context.
+ * @author Vincent Bohlen, vincent.bohlen@fokus.fraunhofer.de
+ */
+public class AdapterRegistry {
+
+    private Logger LOGGER = LoggerFactory.getLogger(AdapterRegistry.class.getName());
+
+    public static final int DEFAULT_TTL = 60;
+    public static final int DEFAULT_MAX_STALE = 300;
+    public static final int DEFAULT_TIMEOUT = 5;
+
+    private WebClient webClient;
+    private int configManagerPort;
+    private String configManagerHost;
+    private long ttl;
+    private long refreshAfter;
+    private long maxStale;
+    private long timeout;
+
+    private Map<String, Entry> entries = new HashMap<>();
+    private Map<String, List<Handler<AsyncResult<JsonObject>>>> loading = new HashMap<>();
+
+    private long hits;
+    private long misses;
+    private long staleHits;
+    private long refreshes;
+    private long loadFailures;
+
+    public AdapterRegistry(WebClient webClient, int configManagerPort, String configManagerHost, int ttl, int maxStale, int timeout) {
+        this.webClient = webClient;
+        this.configManagerPort = configManagerPort;
+        this.configManagerHost = configManagerHost;
+        this.ttl = ttl * 1000L;
+        this.refreshAfter = this.ttl * 4 / 5;
+        this.maxStale = maxStale * 1000L;
+        this.timeout = timeout * 1000L;
+    }
+
+    /**
+     * @param resultHandler receives the JsonObject with the host and port of the adapter
+     */
+    public void resolve(String dataSourceType, Handler<AsyncResult<JsonObject>> resultHandler) {
+        Entry entry = entries.get(dataSourceType);
+        long now = System.currentTimeMillis();
+        if (entry != null && now < entry.loaded + ttl) {
+            hits++;
+            if (now >= entry.loaded + refreshAfter && !loading.containsKey(dataSourceType)) {
+                refreshes++;
+                load(dataSourceType, reply -> {});
+            }
+            resultHandler.handle(Future.succeededFuture(entry.adapter.copy()));
+            return;
+        }
+        misses++;
+        load(dataSourceType, reply -> {
+            if (reply.failed() && entry != null && System.currentTimeMillis() < entry.loaded + ttl + maxStale) {
+                staleHits++;
+                LOGGER.warn("Serving expired adapter of " + dataSourceType + ", the configuration manager could not be reached.");
+                resultHandler.handle(Future.succeededFuture(entry.adapter.copy()));
+            } else {
+                resultHandler.handle(reply);
+            }
+        });
+    }
+
+    /**
+     * @return the number of cached types and the hit, miss, stale hit, background refresh and load failure counts since the start
+     */
+    public JsonObject getStats() {
+        return new JsonObject()
+                .put("size", entries.size())
+                .put("hits", hits)
+                .put("misses", misses)
+                .put("staleHits", staleHits)
+                .put("refreshes", refreshes)
+                .put("loadFailures", loadFailures);
+    }
+
+    private void load(String dataSourceType, Handler<AsyncResult<JsonObject>> resultHandler) {
+        if (loading.containsKey(dataSourceType)) {
+            loading.get(dataSourceType).add(resultHandler);
+            return;
+        }
+        List<Handler<AsyncResult<JsonObject>>> handlers = new ArrayList<>();
+        handlers.add(resultHandler);
+        loading.put(dataSourceType, handlers);
+        webClient
+                .get(configManagerPort, configManagerHost, "/getAdapter/" + dataSourceType)
+                // a hanging configuration manager must fail the load, otherwise the type stays in loading forever
+                .timeout(timeout)
+                .send(ar -> {
+                    loading.remove(dataSourceType);
+                    AsyncResult<JsonObject> result;
+                    if (ar.succeeded() && ar.result().statusCode() == 200) {
+                        JsonObject adapter = body(ar.result().bodyAsString());
+                        if (adapter != null && adapter.getString("host") != null && adapter.getInteger("port") != null) {
+                            entries.put(dataSourceType, new Entry(adapter, System.currentTimeMillis()));
+                            result = Future.succeededFuture(adapter.copy());
+                        } else {
+                            result = Future.failedFuture("No adapter registered for " + dataSourceType + ".");
+                        }
+                    } else {
+                        result = Future.failedFuture(ar.failed() ? ar.cause().getMessage() : "Configuration manager replied with status " + ar.result().statusCode() + ".");
+                    }
+                    if (result.failed()) {
+                        loadFailures++;
+                        LOGGER.error(result.cause());
+                    }
+                    handlers.forEach(h -> h.handle(result));
+                });
+    }
+
+    private JsonObject body(String body) {
+        try {
+            return body == null ? null : new JsonObject(body);
+        } catch (DecodeException e) {
+            return null;
+        }
+    }
+
+    private static class Entry {
+        private final JsonObject adapter;
+        private final long loaded;
+
+        private Entry(JsonObject adapter, long loaded) {
+            this.adapter = adapter;
+            this.loaded = loaded;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package de.fraunhofer.fokus.ids.services.datasourceAdapter;
 
+import de.fraunhofer.fokus.ids.codecs.Codecs;
 import io.vertx.codegen.annotations.Fluent;
 import io.vertx.codegen.annotations.GenIgnore;
 import io.vertx.codegen.annotations.ProxyGen;
@@ -8,7 +9,6 @@ import io.vertx.core.AsyncResult;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
 import io.vertx.core.json.JsonObject;
-import io.vertx.ext.web.client.WebClient;
 /**
  * @author Vincent Bohlen, vincent.bohlen@fokus.fraunhofer.de
  */
@@ -16,8 +16,30 @@ import io.vertx.ext.web.client.WebClient;
 @VertxGen
 public interface DataSourceAdapterService {
 
+    /**
+     * Resolves the adapter of the data source type. Files are not requested via the event bus but streamed by the AdapterFileClient.
+     * @param resultHandler receives the JsonObject with the host and port of the adapter
+     */
     @Fluent
-    DataSourceAdapterService getFile(String dataSourceType, JsonObject request, Handler<AsyncResult<String>> resultHandler);
+    DataSourceAdapterService getAdapter(String dataSourceType, Handler<AsyncResult<JsonObject>> resultHandler);
+
+    /**
+     * @param resultHandler receives the statistics of the AdapterRegistry
+     */
+    @Fluent
+    DataSourceAdapterService getAdapterStats(Handler<AsyncResult<JsonObject>> resultHandler);
+
+    /**
+     * @param resultHandler receives the breaker state, requests in flight and rejection counts of the adapters by data source type
+     */
+    @Fluent
+    DataSourceAdapterService getAdapterHealth(Handler<AsyncResult<JsonObject>> resultHandler);
+
+    /**
+     * @param resultHandler receives the utilization and wait queue of the client pools by adapter endpoint
+     */
+    @Fluent
+    DataSourceAdapterService getAdapterPools(Handler<AsyncResult<JsonObject>> resultHandler);
 
     @Fluent
     DataSourceAdapterService supported(String dataSourceType, Handler<AsyncResult<JsonObject>> resultHandler);
@@ -35,13 +57,13 @@ public interface DataSourceAdapterService {
     DataSourceAdapterService getDataSourceFormSchema(String dataSourceType, Handler<AsyncResult<JsonObject>> resultHandler);
 
     @GenIgnore
-    static DataSourceAdapterService create(Vertx vertx, WebClient webClient, int gatewayPort, String gatewayHost, String tempFileRootPath, Handler<AsyncResult<DataSourceAdapterService>> readyHandler) {
-        return new DataSourceAdapterServiceImpl(vertx, webClient, gatewayPort, gatewayHost, tempFileRootPath, readyHandler);
+    static DataSourceAdapterService create(Vertx vertx, AdapterClients adapterClients, AdapterRegistry adapterRegistry, AdapterGuards adapterGuards, Handler<AsyncResult<DataSourceAdapterService>> readyHandler) {
+        return new DataSourceAdapterServiceImpl(vertx, adapterClients, adapterRegistry, adapterGuards, readyHandler);
     }
 
     @GenIgnore
     static DataSourceAdapterService createProxy(Vertx vertx, String address) {
-        return new DataSourceAdapterServiceVertxEBProxy(vertx, address);
+        return new DataSourceAdapterServiceVertxEBProxy(vertx, address, Codecs.proxyOptions());
     }
 
 }
@@ -4,94 +4,96 @@ import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
-import io.vertx.core.file.AsyncFile;
-import io.vertx.core.file.OpenOptions;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.DecodeException;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
-import io.vertx.ext.web.client.WebClient;
-import io.vertx.ext.web.codec.BodyCodec;
-import java.util.UUID;
+import io.vertx.ext.web.client.HttpRequest;
+import io.vertx.ext.web.client.HttpResponse;
 
 /**
+ * Adapters are resolved via the AdapterRegistry, so an adapter operation needs a single request to the configuration manager at most.
+ * Every request to an adapter has a timeout and passes the AdapterGuard of its data source type, which limits the requests in flight
+ * and fails fast while the adapter is unhealthy. The requests are sent with the client pool of the adapter endpoint from AdapterClients,
+ * the configuration manager is asked with a client of its own.
  * @author Vincent Bohlen, vincent.bohlen@fokus.fraunhofer.de
  */
 public class DataSourceAdapterServiceImpl implements DataSourceAdapterService {
 
     private Logger LOGGER = LoggerFactory.getLogger(DataSourceAdapterServiceImpl.class.getName());
 
-    private WebClient webClient;
-    private int configManagerPort;
-    private String configManagerHost;
+    /**
+     * Timeouts of the adapter operations in milliseconds. Creating a data asset may copy the data, the other operations only read metadata.
+     */
+    private static final long READ_TIMEOUT = 10000;
+    private static final long DELETE_TIMEOUT = 30000;
+    private static final long CREATE_TIMEOUT = 120000;
+
+    private AdapterClients adapterClients;
+    private AdapterRegistry adapterRegistry;
+    private AdapterGuards adapterGuards;
     private Vertx vertx;
-    private String tempFileRootPath;
 
-    public DataSourceAdapterServiceImpl(Vertx vertx, WebClient webClient, int gatewayPort, String gatewayHost, String tempFileRootPath, Handler<AsyncResult<DataSourceAdapterService>> readyHandler) {
-        this.webClient = webClient;
-        this.configManagerHost = gatewayHost;
-        this.configManagerPort = gatewayPort;
-        this.tempFileRootPath = tempFileRootPath;
+    public DataSourceAdapterServiceImpl(Vertx vertx, AdapterClients adapterClients, AdapterRegistry adapterRegistry, AdapterGuards adapterGuards, Handler<AsyncResult<DataSourceAdapterService>> readyHandler) {
+        this.adapterClients = adapterClients;
+        this.adapterRegistry = adapterRegistry;
+        this.adapterGuards = adapterGuards;
         this.vertx = vertx;
 
         readyHandler.handle(Future.succeededFuture(this));
     }
 
-    private void post(int port, String host, String path, JsonObject payload, Handler<AsyncResult<JsonObject>> resultHandler) {
-        webClient
-                .post(port, host, path)
-                .sendJsonObject(payload, ar -> {
-                    if (ar.succeeded()) {
-                        resultHandler.handle(Future.succeededFuture(ar.result().bodyAsJsonObject()));
-                    } else {
-                        LOGGER.error(ar.cause());
-                        resultHandler.handle(Future.failedFuture(ar.cause()));
-                    }
-                });
+    private void post(String dataSourceType, JsonObject adapter, String path, long timeout, JsonObject payload, Handler<AsyncResult<JsonObject>> resultHandler) {
+        AdapterClients.Pool pool = adapterClients.pool(adapter.getString("host"), adapter.getInteger("port"));
+        send(dataSourceType, pool, pool.getWebClient().post(adapter.getInteger("port"), adapter.getString("host"), path).timeout(timeout), payload, resultHandler);
     }
 
-    private void download(int port, String host, String path, JsonObject payload, Handler<AsyncResult<String>> resultHandler) {
-        String fileName = tempFileRootPath+UUID.randomUUID().toString();
-        AsyncFile asyncFile = vertx.fileSystem().openBlocking(fileName, new OpenOptions());
-        webClient
-                .post(port, host, path)
-                .as(BodyCodec.pipe(asyncFile))
-                .sendJsonObject(payload, ar -> {
-                    if (ar.succeeded()) {
-                        resultHandler.handle(Future.succeededFuture(fileName));
-                    } else {
-                        LOGGER.error(ar.cause());
-                        resultHandler.handle(Future.failedFuture(ar.cause()));
-                    }
-                });
+    private void get(String dataSourceType, JsonObject adapter, String path, long timeout, Handler<AsyncResult<JsonObject>> resultHandler) {
+        AdapterClients.Pool pool = adapterClients.pool(adapter.getString("host"), adapter.getInteger("port"));
+        send(dataSourceType, pool, pool.getWebClient().get(adapter.getInteger("port"), adapter.getString("host"), path).timeout(timeout), null, resultHandler);
     }
 
-
-    private void get(int port, String host, String path, Handler<AsyncResult<JsonObject>> resultHandler) {
-
-        webClient
-                .get(port, host, path)
-                .send(ar -> {
-                    if (ar.succeeded()) {
-                        resultHandler.handle(Future.succeededFuture(ar.result().bodyAsJsonObject()));
-                    } else {
-                        LOGGER.error(ar.cause());
-                        resultHandler.handle(Future.failedFuture(ar.cause()));
-                    }
-                });
+    /**
+     * Sends the request through the guard of the data source type. Transport errors, timeouts and 5xx replies count as failures of the adapter,
+     * a reply that is no JSON object only fails the request.
+     */
+    private void send(String dataSourceType, AdapterClients.Pool pool, HttpRequest<Buffer> request, JsonObject payload, Handler<AsyncResult<JsonObject>> resultHandler) {
+        adapterGuards.guard(dataSourceType).<HttpResponse<Buffer>>execute(future -> {
+            Handler<AsyncResult<HttpResponse<Buffer>>> handler = ar -> {
+                pool.end(ar.succeeded() ? ar.result().version() : null, ar.cause());
+                if (ar.succeeded() && ar.result().statusCode() >= 500) {
+                    future.fail("Adapter " + dataSourceType + " replied with status " + ar.result().statusCode() + ".");
+                } else {
+                    future.handle(ar);
+                }
+            };
+            pool.begin();
+            if (payload == null) {
+                request.send(handler);
+            } else {
+                request.sendJsonObject(payload, handler);
+            }
+        }, ar -> {
+            if (ar.succeeded()) {
+                try {
+                    resultHandler.handle(Future.succeededFuture(ar.result().bodyAsJsonObject()));
+                } catch (DecodeException e) {
+                    LOGGER.error(e);
+                    resultHandler.handle(Future.failedFuture(e));
+                }
+            } else {
+                LOGGER.error(ar.cause());
+                resultHandler.handle(Future.failedFuture(ar.cause()));
+            }
+        });
     }
 
     @Override
-    public DataSourceAdapterService getFile(String dataSourceType, JsonObject request, Handler<AsyncResult<String>> resultHandler) {
-        get(configManagerPort, configManagerHost,"/getAdapter/"+dataSourceType, reply -> {
+    public DataSourceAdapterService getAdapter(String dataSourceType, Handler<AsyncResult<JsonObject>> resultHandler) {
+        adapterRegistry.resolve(dataSourceType, reply -> {
             if(reply.succeeded()) {
-                download(reply.result().getInteger("port"), reply.result().getString("host"), "/getFile/", request, adapterReply -> {
-                    if (adapterReply.succeeded()) {
-                        resultHandler.handle(Future.succeededFuture(adapterReply.result()));
-                    } else {
-                        LOGGER.error(adapterReply.cause());
-                        resultHandler.handle(Future.failedFuture(adapterReply.cause()));
-                    }
-                });
+                resultHandler.handle(Future.succeededFuture(reply.result()));
             } else {
                 LOGGER.error(reply.cause());
                 resultHandler.handle(Future.failedFuture(reply.cause()));
@@ -100,11 +102,29 @@ public class DataSourceAdapterServiceImpl implements DataSourceAdapterService {
         return this;
     }
 
+    @Override
+    public DataSourceAdapterService getAdapterStats(Handler<AsyncResult<JsonObject>> resultHandler) {
+        resultHandler.handle(Future.succeededFuture(adapterRegistry.getStats()));
+        return this;
+    }
+
+    @Override
+    public DataSourceAdapterService getAdapterHealth(Handler<AsyncResult<JsonObject>> resultHandler) {
+        resultHandler.handle(Future.succeededFuture(adapterGuards.getStats()));
+        return this;
+    }
+
+    @Override
+    public DataSourceAdapterService getAdapterPools(Handler<AsyncResult<JsonObject>> resultHandler) {
+        resultHandler.handle(Future.succeededFuture(adapterClients.getStats()));
+        return this;
+    }
+
     @Override
     public DataSourceAdapterService supported(String dataSourceType, Handler<AsyncResult<JsonObject>> resultHandler) {
-        get(configManagerPort, configManagerHost,"/getAdapter/"+dataSourceType, reply -> {
+        adapterRegistry.resolve(dataSourceType, reply -> {
             if(reply.succeeded()) {
-                get(reply.result().getInteger("port"), reply.result().getString("host"), "/supported/", adapterReply -> {
+                get(dataSourceType, reply.result(), "/supported/", READ_TIMEOUT, adapterReply -> {
                     if (adapterReply.succeeded()) {
                         resultHandler.handle(Future.succeededFuture(adapterReply.result()));
                     } else {
@@ -122,9 +142,9 @@ public class DataSourceAdapterServiceImpl implements DataSourceAdapterService {
 
     @Override
     public DataSourceAdapterService delete(String dataSourceType, Long id, Handler<AsyncResult<JsonObject>> resultHandler) {
-        get(configManagerPort, configManagerHost,"/getAdapter/"+dataSourceType, reply -> {
+        adapterRegistry.resolve(dataSourceType, reply -> {
             if(reply.succeeded()) {
-                get(reply.result().getInteger("port"), reply.result().getString("host"), "/delete/"+id, adapterReply -> {
+                get(dataSourceType, reply.result(), "/delete/"+id, DELETE_TIMEOUT, adapterReply -> {
                     if (adapterReply.succeeded()) {
                         resultHandler.handle(Future.succeededFuture(adapterReply.result()));
                     } else {
@@ -142,9 +162,9 @@ public class DataSourceAdapterServiceImpl implements DataSourceAdapterService {
 
     @Override
     public DataSourceAdapterService createDataAsset(String dataSourceType, JsonObject message, Handler<AsyncResult<JsonObject>> resultHandler) {
-        get(configManagerPort, configManagerHost,"/getAdapter/"+dataSourceType, reply -> {
+        adapterRegistry.resolve(dataSourceType, reply -> {
             if(reply.succeeded()) {
-                post(reply.result().getInteger("port"), reply.result().getString("host"), "/create/", message, adapterReply -> {
+                post(dataSourceType, reply.result(), "/create/", CREATE_TIMEOUT, message, adapterReply -> {
                     if (adapterReply.succeeded()) {
                         resultHandler.handle(Future.succeededFuture(adapterReply.result()));
                     } else {
@@ -163,9 +183,9 @@ public class DataSourceAdapterServiceImpl implements DataSourceAdapterService {
     @Override
     public DataSourceAdapterService getDataAssetFormSchema(String dataSourceType, Handler<AsyncResult<JsonObject>> resultHandler) {
         LOGGER.info(dataSourceType);
-        get(configManagerPort, configManagerHost,"/getAdapter/"+dataSourceType, reply -> {
+        adapterRegistry.resolve(dataSourceType, reply -> {
             if(reply.succeeded()) {
-                get(reply.result().getInteger("port"), reply.result().getString("host"), "/getDataAssetFormSchema/", adapterReply -> {
+                get(dataSourceType, reply.result(), "/getDataAssetFormSchema/", READ_TIMEOUT, adapterReply -> {
                     if (adapterReply.succeeded()) {
                         resultHandler.handle(Future.succeededFuture(adapterReply.result()));
                     } else {
@@ -184,9 +204,9 @@ public class DataSourceAdapterServiceImpl implements DataSourceAdapterService {
     @Override
     public DataSourceAdapterService getDataSourceFormSchema(String dataSourceType,Handler<AsyncResult<JsonObject>> resultHandler) {
         LOGGER.info(dataSourceType);
-        get(configManagerPort, configManagerHost,"/getAdapter/"+dataSourceType, reply -> {
+        adapterRegistry.resolve(dataSourceType, reply -> {
             if(reply.succeeded()) {
-                get(reply.result().getInteger("port"), reply.result().getString("host"), "/getDataSourceFormSchema/", adapterReply -> {
+                get(dataSourceType, reply.result(), "/getDataSourceFormSchema/", READ_TIMEOUT, adapterReply -> {
                     if (adapterReply.succeeded()) {
                         resultHandler.handle(Future.succeededFuture(adapterReply.result()));
                     } else {
@@ -30,7 +30,13 @@ public class DataSourceAdapterServiceVerticle extends AbstractVerticle {
 
         retriever.getConfig(ar -> {
             if (ar.succeeded()) {
-                DataSourceAdapterService.create(vertx, webClient, ar.result().getInteger("CONFIG_MANAGER_PORT"), ar.result().getString("CONFIG_MANAGER_HOST"), ar.result().getString("REPOSITORY"),  ready -> {
+                AdapterRegistry adapterRegistry = new AdapterRegistry(webClient, ar.result().getInteger("CONFIG_MANAGER_PORT"), ar.result().getString("CONFIG_MANAGER_HOST"),
+                        ar.result().getInteger("ADAPTER_REGISTRY_TTL", AdapterRegistry.DEFAULT_TTL), ar.result().getInteger("ADAPTER_REGISTRY_MAX_STALE", AdapterRegistry.DEFAULT_MAX_STALE),
+                        ar.result().getInteger("ADAPTER_REGISTRY_TIMEOUT", AdapterRegistry.DEFAULT_TIMEOUT));
+                AdapterGuards adapterGuards = new AdapterGuards(ar.result().getInteger("ADAPTER_MAX_CONCURRENT", AdapterGuards.DEFAULT_MAX_CONCURRENT),
+                        ar.result().getInteger("ADAPTER_BREAKER_THRESHOLD", AdapterGuards.DEFAULT_FAILURE_THRESHOLD), ar.result().getInteger("ADAPTER_BREAKER_RESET", AdapterGuards.DEFAULT_RESET_TIMEOUT));
+                AdapterClients adapterClients = new AdapterClients(vertx, AdapterClients.options(ar.result()));
+                DataSourceAdapterService.create(vertx, adapterClients, adapterRegistry, adapterGuards, ready -> {
                     if (ready.succeeded()) {
                         ServiceBinder binder = new ServiceBinder(vertx);
                         binder